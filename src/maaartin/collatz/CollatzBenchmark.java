@@ -3,141 +3,155 @@ package maaartin.collatz;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
 
-import de.grajcar.dout.Dout;
-
-enum CollatzBenchmark {
-	SLOW,
-	FIDDLING,
-	SIMPLE,
-	//	JUMPING_12_27,
-	//	JUMPING_12_28,
-	//	JUMPING_12_29,
-	//	JUMPING_12_30,
-	//	JUMPING_12_31,
-	//	JUMPING_13_30,
-	//	JUMPING_13_31,
-	//	JUMPING_14_27,
-	//	JUMPING_14_28,
-	//	JUMPING_14_29,
-	//	JUMPING_14_30,
-	//	JUMPING_14_31,
-	//	JUMPING_15_26,
-	//	JUMPING_15_27,
-	//	JUMPING_15_28,
-	//	JUMPING_15_29,
-	//	JUMPING_15_30,
-	//	JUMPING_15_31,
-	//	JUMPING_16_26,
-	//	JUMPING_16_27,
-	//	JUMPING_16_28,
-	//	JUMPING_16_29,
-	//	JUMPING_16_30,
-	//	JUMPING_16_31,
-	JUMPING_17_20, // best so far
-	JUMPING_17_21,
-	JUMPING_17_22,
-	JUMPING_17_23,
-	JUMPING_17_24,
-	JUMPING_17_25,
-	JUMPING_17_26,
-	JUMPING_17_27,
-	JUMPING_17_28,
-	JUMPING_17_29,
-	JUMPING_17_30,
-	JUMPING_17_31,
-	//	JUMPING_18_26,
-	//	JUMPING_18_27,
-	//	JUMPING_18_28,
-	//	JUMPING_18_29,
-	//	JUMPING_18_30,
-	//	JUMPING_18_31,
-	//	JUMPING_19_27,
-	//	JUMPING_19_28,
-	//	JUMPING_19_29,
-	//	JUMPING_19_30,
-	//	JUMPING_19_31,
-	//	JUMPING_20_27,
-	//	JUMPING_20_28,
-	//	JUMPING_20_29,
-	//	JUMPING_20_30,
-	//	JUMPING_22_28,
-	//	JUMPING_24_28,
-	//	JUMPING_26_28,
-	//	JUMPING_28_28,
-	//	JUMPING_28_28,
-	//	JUMPING_29_29,
-	;
-
-	public static void main(String[] args) {
-		Dout.a("STARTED");
-		for (final CollatzBenchmark b : CollatzBenchmark.values()) b.go();
-		Dout.a("DONE");
-	}
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
-	long runJumping(long limit) {
-		final int jumpingTableLogSize = Integer.parseInt(name().replaceAll(".*_(\\d+)_(\\d+)", "$1"));
-		final int collatzTableLogSize = Integer.parseInt(name().replaceAll(".*_(\\d+)_(\\d+)", "$2"));
-		checkArgument(collatzTableLogSize >= jumpingTableLogSize);
-		final JumpingTable jumpingTable = JumpingTable.newTable(jumpingTableLogSize);
-		Collatz c = new SimpleCollatz();
-		final int n = Math.max(jumpingTableLogSize, Math.min(collatzTableLogSize, 20));
-		CollatzTable collatzTable = new CollatzTable(collatzTableLogSize).initialize(c, n);
-		for (int i = Math.max(27, n+1); i<=collatzTableLogSize; ++i) {
-			c = new JumpingCollatz(jumpingTable, collatzTable);
-			collatzTable = collatzTable.initialize(c, i);
+/**
+ * JMH benchmarks of the table construction, of the {@link Collatz#delay} latency, and of the {@link Collatz#maximize} throughput.
+ *
+ * <p>Any JMH command line options may be given to {@link #main}, e.g., {@code -p collatzLogSize=20 CollatzBenchmark.delay}
+ * or {@code -prof gc} for reporting the allocation rate.
+ * The {@link VectorCollatz} gets compared in the {@link VectorCollatzBenchmark}.
+ */
+@Fork(value=1, jvmArgsAppend="-Xmx4g")
+public class CollatzBenchmark {
+	@State(Scope.Benchmark) public static class Tables {
+		@Setup(Level.Trial) public void setUp() {
+			jumpingTable = JumpingTable.newTable(jumpingLogSize);
+			collatzTable = CollatzTable.newTable(jumpingTable, collatzLogSize);
+			jumpingCollatz = new JumpingCollatz(jumpingTable, collatzTable);
+			wideCollatz = new WideCollatz(jumpingTable, collatzTable);
 		}
-		c = new JumpingCollatz(jumpingTable, collatzTable);
-		initialized();
-		return c.maximize(1, limit);
+
+		/** Bigger tables save jumps, but cause more cache misses. */
+		@Param({"12", "17", "20"}) public int jumpingLogSize;
+		/** Up to 31, the tables fit in an array, above that they get allocated off-heap. */
+		@Param({"20", "24", "28"}) public int collatzLogSize;
+
+		JumpingTable jumpingTable;
+		CollatzTable collatzTable;
+		JumpingCollatz jumpingCollatz;
+		WideCollatz wideCollatz;
 	}
 
-	long runSimple(long limit) {
-		final Collatz c = new SimpleCollatz();
-		initialized();
-		return c.maximize(1, limit);
+	@State(Scope.Thread) public static class Starts {
+		@Setup(Level.Trial) public void setUp() {
+			checkArgument(bits < 64);
+			final Random random = new Random(0);
+			for (int i=0; i<starts.length; ++i) starts[i] = random.nextLong() >>> (64-bits) | 1L << (bits-1);
+		}
+
+		long next() {
+			return starts[index++ & (STARTS_LENGTH-1)];
+		}
+
+		/** The bit length of the starts, with 60 bits being the most {@link JumpingCollatz#limit} allows. */
+		@Param({"33", "40", "48", "60"}) public int bits;
+
+		private final long[] starts = new long[STARTS_LENGTH];
+		private int index;
 	}
 
-	long runFiddling(long limit) {
-		final Collatz c = new FiddlingCollatz();
-		initialized();
-		return c.maximize(1, limit);
+	@State(Scope.Thread) public static class WideStarts {
+		@Setup(Level.Trial) public void setUp() {
+			checkArgument(bits < 128);
+			final Random random = new Random(0);
+			for (int i=0; i<lows.length; ++i) {
+				final BigInteger start = new BigInteger(bits-1, random).setBit(bits-1);
+				lows[i] = start.longValue();
+				highs[i] = start.shiftRight(64).longValue();
+			}
+		}
+
+		int delay(WideCollatz wideCollatz) {
+			final int i = index++ & (STARTS_LENGTH-1);
+			return wideCollatz.delay(lows[i], highs[i]);
+		}
+
+		/** The bit length of the starts, which exceed the {@link JumpingCollatz#limit}. */
+		@Param({"64", "100", "126"}) public int bits;
+
+		private final long[] lows = new long[STARTS_LENGTH];
+		private final long[] highs = new long[STARTS_LENGTH];
+		private int index;
 	}
 
-	@SuppressWarnings("boxing")
-	private void go() {
-		startTime = now();
-		final long result = run(LIMIT);
-		endTime = now();
-		final double initialization = 1e-9 * (middleTime-startTime);
-		final double computation= 1e-9 * (endTime-middleTime);
-		final double total = initialization + computation;
-		if (initialization < 0 && result == 0) return;
-		System.out.format("%20s %9.3f %9.3f %9.3f (%d)\n", this, initialization, computation, total, result);
-		checkResult(result);
+	@State(Scope.Benchmark) public static class Maximize {
+		@Setup(Level.Trial) public void setUp(Tables tables) {
+			jumpingCollatz = tables.jumpingCollatz;
+		}
+
+		@TearDown(Level.Trial) public void tearDown() {
+			if (max == (long) 1e9) verify(result == 670617279);
+			if (max == (long) 1e10) verify(result == 9780657630L);
+		}
+
+		long maximize() {
+			switch (engine) {
+				case "JUMPING": return jumpingCollatz.maximize(1, max);
+				case "INTERLEAVED": return jumpingCollatz.maximizeInterleaved(1, max);
+				case "PARALLEL": return jumpingCollatz.maximizeInParallel(1, max);
+				default: throw new IllegalArgumentException(engine);
+			}
+		}
+
+		@Param({"JUMPING", "INTERLEAVED", "PARALLEL"}) public String engine;
+		@Param({"1000000000"}) public long max;
+
+		private JumpingCollatz jumpingCollatz;
+		long result;
 	}
 
-	@SuppressWarnings("all") private void checkResult(final long result) {
-		if (LIMIT == (long) 1e10) verify(result == 9780657630L);
+	public static void main(String[] args) throws Exception {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		final OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLineOptions);
+		if (commandLineOptions.getIncludes().isEmpty()) options.include(CollatzBenchmark.class.getSimpleName());
+		new Runner(options.build()).run();
 	}
 
-	private long now() {
-		return System.nanoTime();
+	@Benchmark @BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations=1) @Measurement(iterations=5)
+	public CollatzTable initialize(Tables tables) {
+		return CollatzTable.newTable(tables.jumpingTable, tables.collatzLogSize);
 	}
 
-	private static final long LIMIT = (long) 1e10;
+	@Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations=5, time=1) @Measurement(iterations=5, time=1)
+	public int delay(Tables tables, Starts starts) {
+		return tables.jumpingCollatz.delay(starts.next());
+	}
 
-	final long run(long limit) {
-		//		if (name().startsWith("SIMPLE")) return runSimple(limit);
-		if (name().startsWith("JUMPING")) return runJumping(limit);
-		//		if (name().startsWith("FIDDLING")) return runFiddling(limit);
-		return 0;
+	@Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Warmup(iterations=5, time=1) @Measurement(iterations=5, time=1)
+	public int wideDelay(Tables tables, WideStarts starts) {
+		return starts.delay(tables.wideCollatz);
 	}
 
-	final void initialized() {
-		middleTime = now();
+	@Benchmark @BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations=1) @Measurement(iterations=3)
+	public long maximize(Maximize maximize) {
+		return maximize.result = maximize.maximize();
 	}
 
-	private long startTime;
-	private long middleTime;
-	private long endTime;
+	/** The number of random starts used for the {@link #delay} benchmarks, which must be a power of two. */
+	private static final int STARTS_LENGTH = 1 << 12;
 }
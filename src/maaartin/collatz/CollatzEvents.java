@@ -0,0 +1,48 @@
+package maaartin.collatz;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Custom JDK Flight Recorder events, so that the table builds and the maximize segments can be correlated with GC and paging in JMC.
+ *
+ * <p>All of them get emitted rarely enough, so that their overhead is negligible even when recording.
+ */
+final class CollatzEvents {
+	@Name("maaartin.collatz.TableInitialization") @Label("Collatz Table Initialization") @Category(CATEGORY)
+	@Description("Filling a part of a CollatzTable")
+	static final class TableInitialization extends Event {
+		@Label("Log Size") int logSize;
+		@Label("Read Limit Before") long readLimitBefore;
+		@Label("Read Limit After") long readLimitAfter;
+		@Label("Parallel") boolean parallel;
+		@Label("Initializer") String initializer;
+	}
+
+	@Name("maaartin.collatz.JumpingTableCreation") @Label("Jumping Table Creation") @Category(CATEGORY)
+	static final class JumpingTableCreation extends Event {
+		@Label("Even Steps") int evenSteps;
+		@Label("Entries") long entries;
+	}
+
+	@Name("maaartin.collatz.MaximizeSegment") @Label("Maximize Segment") @Category(CATEGORY)
+	@Description("Maximizing the delay over a part of a range by a single thread")
+	static final class MaximizeSegment extends Event {
+		@Label("From") long from;
+		@Label("To") long to;
+		@Label("Best Start") @Description("-1 if no start in the segment could become the result") long bestN;
+		@Label("Best Delay") int bestDelay;
+		@Label("Starts Evaluated") @Description("Zero unless the HotPathCounters are enabled") long evaluated;
+		@Label("Starts Pruned") @Description("Starts abandoned before their delay got known, as they couldn't become the result, "
+				+ "zero unless the HotPathCounters are enabled")
+		long pruned;
+	}
+
+	private CollatzEvents() {
+	}
+
+	private static final String CATEGORY = "Collatz";
+}
@@ -3,8 +3,13 @@ package maaartin.collatz;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 import lombok.Getter;
 
@@ -12,40 +17,145 @@ import com.google.common.math.LongMath;
 
 /**
  * A table caching all {@link Collatz#delay}s for odd positive arguments below {@link #readLimit}.
+ *
+ * <p>An instance gets never modified by {@link #initialize}, instead a new instance sharing the storage gets returned.
  */
-class CollatzTable {
+abstract class CollatzTable {
+	/** The standard table backed by a {@code short[]}. */
+	static final class ArrayCollatzTable extends CollatzTable {
+		/**
+		 * Create a new table of size computed as 2<sup>logSize</sup>,
+		 * implying that the {@link #writeLimit} is 2<sup>logSize+1</sup>, as only the odd arguments get stored.
+		 * For logSize 31, the size is slightly smaller, as no array can be that big.
+		 *
+		 * <p> All table values but the first are initialized to -1, meaning unset.
+		 */
+		private ArrayCollatzTable(int logSize) {
+			this(new short[computeArrayLength(logSize)], 2);
+			Arrays.fill(data, (short) -1);
+			data[0] = 0;
+		}
+
+		private ArrayCollatzTable(short[] data, long readLimit) {
+			super(readLimit, 2L * data.length);
+			this.data = data;
+		}
+
+		@Override long computeLength(int logSize) {
+			return computeArrayLength(logSize);
+		}
+
+		private static int computeArrayLength(int logSize) {
+			checkArgument(0 < logSize && logSize < 32);
+			return logSize==31 ? Integer.MAX_VALUE - 8 : 1 << logSize;
+		}
+
+		@Override CollatzTable withReadLimit(long readLimit) {
+			return new ArrayCollatzTable(data, readLimit);
+		}
+
+		private int readIndex(long n) {
+			assert hasEntry(n);
+			return writeIndex(n);
+		}
+
+		private int writeIndex(long n) {
+			assert (n&1) != 0 & n > 0 && n < 2L * data.length;
+			return (int) n >>> 1;
+		}
+
+		@Override int get(long n) {
+			assert n > 0;
+			return data[readIndex(n)];
+		}
+
+		@Override void set(long n, int value) {
+			data[writeIndex(n)] = (short) value;
+		}
+
+		@Override int getLazily(long n) {
+			return (short) SHORT_ARRAY.getOpaque(data, writeIndex(n));
+		}
+
+		@Override void setLazily(long n, int value) {
+			SHORT_ARRAY.setOpaque(data, writeIndex(n), (short) value);
+		}
+
+		@Override void setAll(long index, ByteBuffer source) {
+			source.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(data, Math.toIntExact(index), source.remaining() / 2);
+		}
+
+		@Override void getAll(long index, ByteBuffer target) {
+			final int length = target.remaining() / 2;
+			target.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(data, Math.toIntExact(index), length);
+			target.position(target.position() + 2*length);
+		}
+
+		private static final VarHandle SHORT_ARRAY = MethodHandles.arrayElementVarHandle(short[].class);
+
+		private final short[] data;
+	}
+
+	CollatzTable(long readLimit, long writeLimit) {
+		this.readLimit = readLimit;
+		this.writeLimit = writeLimit;
+	}
+
 	/**
-	 * Create a new table of size computed as 2<sup>logSize</sup>,
-	 * implying that the {@link limit} is 2<sup>logSize+1</sup>. TODO
-	 * 
-	 * <p> All table values but the first are initialized to -1, meaning unset.
+	 * Create a new table of size computed as 2<sup>logSize</sup>, with only the entry for 1 set.
+	 * Tables for logSize above 31 don't fit in an array and get allocated {@link OffHeapCollatzTable off-heap}.
 	 */
-	CollatzTable(int logSize) {
-		checkArgument(0 < logSize && logSize < 32);
-		data = new short[computeLength(logSize)];
-		readLimit = 2;
-		writeLimit = 2L * data.length;
-		Arrays.fill(data, (short) -1);
-		data[0] = 0;
+	static CollatzTable newTable(int logSize) {
+		return logSize<=31 ? new ArrayCollatzTable(logSize) : new OffHeapCollatzTable(logSize);
 	}
 
-	private CollatzTable(short[] data, long limit) {
-		this.data = data;
-		this.readLimit = limit;
-		writeLimit = 2L * data.length;
+	/**
+	 * Return a fully initialized table, using a {@link SimpleCollatz} for the first 2<sup>20</sup> entries
+	 * and {@link JumpingCollatz}es based on the already initialized part for the rest.
+	 *
+	 * <p>Every pass doubles the initialized part, so that the trajectories of the new entries reach the old ones after a few jumps.
+	 * This is faster than skipping passes, e.g., starting the doubling at 2<sup>27</sup> costs a quarter more for logSize 28.
+	 */
+	static CollatzTable newTable(JumpingTable jumpingTable, int logSize) {
+		checkArgument(logSize >= jumpingTable.evenSteps());
+		final int n = Math.max(jumpingTable.evenSteps(), Math.min(logSize, 20));
+		CollatzTable result = newTable(logSize).initializeInParallel(new SimpleCollatz(), n);
+		for (int i=n+1; i<=logSize; ++i) result = result.initializeInParallel(new JumpingCollatz(jumpingTable, result), i);
+		return result.initializeInParallel(new JumpingCollatz(jumpingTable, result));
 	}
 
 	/** Initialize a part of the table. */
 	CollatzTable initialize(Collatz initializerCollatz, int logSize) {
 		checkNotNull(initializerCollatz);
-		final int length = computeLength(logSize);
-		checkArgument(length <= data.length);
-		return initializeInternal(initializerCollatz, length);
+		final long length = computeLength(logSize);
+		checkArgument(length <= writeLimit/2);
+		return initializeInternal(initializerCollatz, length, false);
 	}
 
 	/** Initialize the whole table. */
 	CollatzTable initialize(Collatz initializerCollatz) {
-		return initializeInternal(initializerCollatz, data.length);
+		checkNotNull(initializerCollatz);
+		return initializeInternal(initializerCollatz, writeLimit/2, false);
+	}
+
+	/**
+	 * Like {@link #initialize(Collatz, int)}, but using all available cores.
+	 * The {@code initializerCollatz} must be usable concurrently.
+	 */
+	CollatzTable initializeInParallel(Collatz initializerCollatz, int logSize) {
+		checkNotNull(initializerCollatz);
+		final long length = computeLength(logSize);
+		checkArgument(length <= writeLimit/2);
+		return initializeInternal(initializerCollatz, length, true);
+	}
+
+	/**
+	 * Like {@link #initialize(Collatz)}, but using all available cores.
+	 * The {@code initializerCollatz} must be usable concurrently.
+	 */
+	CollatzTable initializeInParallel(Collatz initializerCollatz) {
+		checkNotNull(initializerCollatz);
+		return initializeInternal(initializerCollatz, writeLimit/2, true);
 	}
 
 	@Override public String toString() {
@@ -54,53 +164,101 @@ class CollatzTable {
 				+ "-" + LongMath.log2(writeLimit, RoundingMode.UP);
 	}
 
-	private CollatzTable initializeInternal(Collatz initializerCollatz, int length) {
-		final int min = (int) (readLimit/2);
-		final int max = Math.min(length, data.length) - 1;
-		for (int i=min; i<=max; ++i) data[i] = (short) initializerCollatz.delay(2L*i + 1);
-		return new CollatzTable(data, 2L * max);
+	private CollatzTable initializeInternal(Collatz initializerCollatz, long length, boolean parallel) {
+		final long min = readLimit/2;
+		final long max = Math.min(length, writeLimit/2) - 1;
+		if (max < min) return this;
+		final CollatzEvents.TableInitialization event = new CollatzEvents.TableInitialization();
+		event.begin();
+		if (parallel) {
+			// The slices are disjoint and the initializerCollatz may only read the entries below min.
+			final int slices = Math.toIntExact(((max-min) >> LOG_SLICE_SIZE) + 1);
+			IntStream.range(0, slices).parallel().forEach(slice -> {
+				final long from = min + ((long) slice << LOG_SLICE_SIZE);
+				fill(initializerCollatz, from, Math.min(max, from + (1L << LOG_SLICE_SIZE) - 1));
+			});
+		} else {
+			fill(initializerCollatz, min, max);
+		}
+		final CollatzTable result = withReadLimit(2L * max);
+		if (event.shouldCommit()) {
+			event.logSize = LongMath.log2(length, RoundingMode.CEILING);
+			event.readLimitBefore = readLimit;
+			event.readLimitAfter = result.readLimit;
+			event.parallel = parallel;
+			event.initializer = initializerCollatz.toString();
+			event.commit();
+		}
+		return result;
 	}
 
-	private int computeLength(int logSize) {
-		return logSize==31 ? Integer.MAX_VALUE - 8 : 1 << logSize;
+	private void fill(Collatz initializerCollatz, long min, long max) {
+		for (long i=min; i<=max; ++i) set(2*i + 1, initializerCollatz.delay(2*i + 1));
 	}
 
+	/** Return the number of entries needed for a table of size computed as 2<sup>logSize</sup>. */
+	abstract long computeLength(int logSize);
+
+	/** Return a table sharing the storage with {@code this}, but having a different {@link #readLimit}. */
+	abstract CollatzTable withReadLimit(long readLimit);
+
 	/** Return true, if this table has a <em>non-empty</em> entry for the argument, which must be an odd number. */
 	boolean hasEntry(long n) {
 		assert (n&1) != 0 & n > 0;
 		return 0 <= n & n < readLimit;
 	}
 
-	private int readIndex(long n) {
-		assert hasEntry(n);
-		return writeIndex(n);
-	}
+	/**
+	 * Return the previously stored value of {@link Collatz#delay} for the argument, or -1 if not set.
+	 *
+	 * @param n an odd number between 1 and {@link #readLimit}.
+	 */
+	abstract int get(long n);
 
-	private int writeIndex(long n) {
-		assert (n&1) != 0 & n > 0 && n < 2L * data.length;
-		return (int) n >>> 1;
+	/**
+	 * Store a value of {@link Collatz#delay} for the argument.
+	 *
+	 * @param n an odd number between 1 and {@link #writeLimit}.
+	 */
+	abstract void set(long n, int value);
+
+	/**
+	 * Return the value stored by {@link #setLazily} for the argument, or -1 if it's unset.
+	 * Unlike {@link #get}, it can be used for entries between the {@link #readLimit} and the {@link #writeLimit}
+	 * concurrently with {@link #setLazily}.
+	 *
+	 * @param n an odd number between 1 and {@link #writeLimit}.
+	 */
+	int getLazily(long n) {
+		return get(n);
 	}
 
 	/**
-	 * Return the previously stored value of {@link Collatz#delay} for the argument, or -1 if not set.
-	 * 
-	 * @param n an odd number between 1 and {@link #readLimit}.
+	 * Like {@link #set}, but the value gets published atomically, so that a concurrent {@link #getLazily} sees either -1 or the value.
+	 * As every entry can only get one value, concurrent writers are harmless.
+	 *
+	 * @param n an odd number between {@link #readLimit} and {@link #writeLimit}.
 	 */
-	int get(long n) {
-		assert n > 0;
-		return data[readIndex(n)];
+	void setLazily(long n, int value) {
+		set(n, value);
 	}
 
+	/** Copy the little-endian shorts from the source to the entries starting at {@code index}. */
+	abstract void setAll(long index, ByteBuffer source);
+
 	/**
-	 * Store a value of {@link Collatz#delay} for the argument.
-	 * 
-	 * @param n an odd number between 1 and {@link #readLimit}.
+	 * Copy the entries starting at {@code index} to the target as little-endian shorts, until it's full.
+	 * Subclasses having a suitable storage override it with a bulk copy.
 	 */
-	void set(long n, int value) {
-		data[writeIndex(n)] = (short) value;
+	void getAll(long index, ByteBuffer target) {
+		final ByteBuffer littleEndian = target.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		for (long n=2*index + 1; littleEndian.hasRemaining(); n+=2) littleEndian.putShort((short) get(n));
+		target.position(littleEndian.position());
 	}
 
+	/** The number of entries processed by a single task in {@link #initializeInParallel}. */
+	private static final int LOG_SLICE_SIZE = 16;
+
 	@Getter private final long readLimit;
 	@Getter private final long writeLimit;
-	private final short[] data;
 }
@@ -0,0 +1,63 @@
+package maaartin.collatz;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Compares the throughput of {@link CollatzTable#get} for random arguments. */
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1) @Measurement(iterations=5, time=1) @Fork(value=1, jvmArgsAppend="-Xmx4g")
+@State(Scope.Benchmark) public class CollatzTableBenchmark {
+	public static void main(String[] args) throws Exception {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		final OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLineOptions);
+		if (commandLineOptions.getIncludes().isEmpty()) options.include(CollatzTableBenchmark.class.getSimpleName());
+		new Runner(options.build()).run();
+	}
+
+	@Setup public void setUp() {
+		arrayTable = CollatzTable.newTable(logSize).initializeInParallel(new SimpleCollatz());
+		compressedTable = CompressedCollatzTable.compress(arrayTable);
+		final Random random = new Random(0);
+		final long limit = compressedTable.readLimit();
+		for (int i=0; i<SIZE; ++i) arguments[i] = (random.nextLong() >>> 1) % limit | 1;
+	}
+
+	@Benchmark public long array() {
+		return get(arrayTable);
+	}
+
+	@Benchmark public long compressed() {
+		return get(compressedTable);
+	}
+
+	private long get(CollatzTable table) {
+		long result = 0;
+		for (int i=0; i<SIZE; ++i) result += table.get(arguments[i]);
+		return result;
+	}
+
+	private static final int SIZE = 1 << 16;
+
+	/** The bigger tables don't fit in the cache and show the effect of the smaller memory footprint. */
+	@Param({"16", "22", "28"}) public int logSize;
+
+	private final long[] arguments = new long[SIZE];
+	private CollatzTable arrayTable;
+	private CollatzTable compressedTable;
+}
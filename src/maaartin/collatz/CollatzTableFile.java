@@ -0,0 +1,172 @@
+package maaartin.collatz;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import com.google.common.math.LongMath;
+
+/**
+ * Persistence of {@link CollatzTable}s, so that they needn't be recomputed on every start.
+ *
+ * <p>The file consists of a header of {@value #HEADER_SIZE} bytes followed by the entries for 1, 3, 5, ... below the readLimit.
+ * The header contains the magic number, the format version, the logSize, the readLimit, and the CRC32 of the entries.
+ * All values are stored as little-endian.
+ */
+final class CollatzTableFile {
+	private static final class Header {
+		Header(int logSize, long readLimit, long checksum) {
+			this.logSize = logSize;
+			this.readLimit = readLimit;
+			this.checksum = checksum;
+		}
+
+		private final int logSize;
+		private final long readLimit;
+		private final long checksum;
+	}
+
+	private CollatzTableFile() {}
+
+	/**
+	 * Save all readable entries of the table.
+	 * The stored logSize is the one of the whole table, so that a {@link #load}ed table can get initialized further.
+	 *
+	 * <p>The file gets written to a temporary file first and moved atomically, so that neither a crash
+	 * nor concurrent processes may leave or see an incomplete file.
+	 */
+	static void save(CollatzTable table, Path path) throws IOException {
+		final Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			write(table, temp);
+			Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void write(CollatzTable table, Path path) throws IOException {
+		final long length = table.readLimit() / 2;
+		final CRC32 crc = new CRC32();
+		try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			channel.position(HEADER_SIZE);
+			for (long i=0; i<length; ) {
+				final int count = (int) Math.min(length - i, BUFFER_SIZE / 2);
+				buffer.limit(2 * count);
+				table.getAll(i, buffer);
+				writeEntries(channel, buffer, crc);
+				i += count;
+			}
+			final int logSize = Math.max(1, LongMath.log2(table.writeLimit() / 2, RoundingMode.CEILING));
+			writeHeader(channel, new Header(logSize, table.readLimit(), crc.getValue()));
+		}
+	}
+
+	/**
+	 * Return a read-only table backed by the file.
+	 *
+	 * @param verify whether to check the checksum, which means reading the whole file
+	 */
+	static MappedCollatzTable map(Path path, boolean verify) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			final Header header = readHeader(channel);
+			final MappedCollatzTable result = new MappedCollatzTable(channel, HEADER_SIZE, header.readLimit);
+			if (verify) verifyChecksum(result, header);
+			return result;
+		}
+	}
+
+	/** Return the logSize stored in the file, which is the one of the saved table. */
+	static int logSize(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			return readHeader(channel).logSize;
+		}
+	}
+
+	/** Return a table loaded from the file into a {@link CollatzTable#newTable new table} with the capacity given by the stored logSize. */
+	static CollatzTable load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			return load(channel, readHeader(channel).logSize);
+		}
+	}
+
+	/** Return a table loaded from the file into a {@link CollatzTable#newTable new table} with the capacity given by {@code logSize}. */
+	static CollatzTable load(Path path, int logSize) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			return load(channel, logSize);
+		}
+	}
+
+	private static CollatzTable load(FileChannel channel, int logSize) throws IOException {
+		final Header header = readHeader(channel);
+		final MappedCollatzTable mapped = new MappedCollatzTable(channel, HEADER_SIZE, header.readLimit);
+		final CollatzTable result = CollatzTable.newTable(logSize);
+		if (header.readLimit > result.writeLimit()) throw new IOException("Table too big for logSize " + logSize);
+		final CRC32 crc = new CRC32();
+		long index = 0;
+		for (final ByteBuffer segment : mapped.segments()) {
+			crc.update(segment.duplicate());
+			result.setAll(index, segment);
+			index += segment.remaining() / 2;
+		}
+		if (crc.getValue() != header.checksum) throw new IOException("Checksum mismatch");
+		return result.withReadLimit(header.readLimit);
+	}
+
+	private static void verifyChecksum(MappedCollatzTable table, Header header) throws IOException {
+		final CRC32 crc = new CRC32();
+		for (final ByteBuffer segment : table.segments()) crc.update(segment);
+		if (crc.getValue() != header.checksum) throw new IOException("Checksum mismatch");
+	}
+
+	private static void writeEntries(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+		buffer.flip();
+		crc.update(buffer.duplicate());
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	private static void writeHeader(FileChannel channel, Header header) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putLong(MAGIC).putInt(VERSION).putInt(header.logSize).putLong(header.readLimit).putLong(header.checksum);
+		buffer.clear();
+		for (long position=0; buffer.hasRemaining(); ) position += channel.write(buffer, position);
+	}
+
+	private static Header readHeader(FileChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		for (long position=0; buffer.hasRemaining(); ) {
+			final int read = channel.read(buffer, position);
+			if (read<0) throw new IOException("Truncated header");
+			position += read;
+		}
+		buffer.flip();
+		if (buffer.getLong() != MAGIC) throw new IOException("Not a CollatzTable file");
+		final int version = buffer.getInt();
+		if (version != VERSION) throw new IOException("Unsupported version " + version);
+		final Header result = new Header(buffer.getInt(), buffer.getLong(), buffer.getLong());
+		if (result.readLimit < 2 || (result.readLimit&1) != 0) throw new IOException("Invalid readLimit " + result.readLimit);
+		if (channel.size() != HEADER_SIZE + result.readLimit) throw new IOException("Invalid file size " + channel.size());
+		return result;
+	}
+
+	/** "COLLATZT" in ASCII. */
+	private static final long MAGIC = 0x545A_5441_4C4C_4F43L;
+	private static final int VERSION = 1;
+	/** The header gets padded, so that the entries are nicely aligned. */
+	private static final int HEADER_SIZE = 64;
+	private static final int BUFFER_SIZE = 1 << 20;
+}
@@ -1,13 +1,44 @@
 package maaartin.collatz;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import junit.framework.TestCase;
 
+import maaartin.collatz.DelayRecordScanner.DelayRecord;
+import maaartin.collatz.PathRecordScanner.PathRecord;
+
 public class CollatzTest extends TestCase {
 	public void testDelay() {
 		for (final Collatz c : collatzs) {
@@ -32,7 +63,7 @@ public class CollatzTest extends TestCase {
 				continue;
 			}
 
-			assert c instanceof JumpingCollatz;
+			assert c instanceof JumpingCollatz || c instanceof WideCollatz;
 
 			checkDelay(c, 8528817511L, 726);
 			checkDelay(c, 9780657630L, 1132);
@@ -101,6 +132,8 @@ public class CollatzTest extends TestCase {
 			checkMaximize(c, 1, 9999, 6171);
 			checkMaximize(c, 1, 123456, 106239);
 			checkMaximize(c, 106240, 123456, 115547);
+			if (!(c instanceof JumpingCollatz)) continue;
+			checkMaximize(c, 1, 10_000_000, 8400511);
 		}
 	}
 
@@ -120,6 +153,845 @@ public class CollatzTest extends TestCase {
 		}
 	}
 
+	public void testMaximize_sieved() {
+		final Random random = new Random(6);
+		final JumpingTable jumpingTable = JumpingTable.newTable(17);
+		final CollatzTable collatzTable = CollatzTable.newTable(17).initialize(simpleCollatz);
+		for (final ResidueSieve sieve : ImmutableList.of(ResidueSieve.newSieve(3, 0), ResidueSieve.newSieve(8, 2), ResidueSieve.newSieve(12, 4))) {
+			final JumpingCollatz c = new JumpingCollatz(jumpingTable, collatzTable, sieve);
+			for (int i=0; i<10; ++i) {
+				final long max = 1 + random.nextInt(2_000_000);
+				assertEquals(sieve.toString(), simpleCollatz.maximize(1, max), c.maximize(1, max));
+			}
+		}
+	}
+
+	public void testResidueSieve() {
+		assertEquals(0.875, ResidueSieve.newSieve(3, 0).survivingFraction());
+		assertTrue(ResidueSieve.newSieve(16, 2).survivingFraction() < 0.15);
+
+		final ResidueSieve sieve = ResidueSieve.newSieve(3, 1);
+		assertEquals(24, sieve.sievedMin(1));
+		assertEquals(24, sieve.sievedMin(24));
+		assertEquals(48, sieve.sievedMin(25));
+		assertEquals(47, sieve.sievedMax(47));
+		assertEquals(23, sieve.sievedMax(46));
+		assertEquals(36, ResidueSieve.sievedMin(35, 36));
+		assertEquals(71, ResidueSieve.sievedMax(100, 36));
+	}
+
+	public void testMaximizeInterleaved() {
+		final Random random = new Random(7);
+		for (final Collatz c : collatzs) {
+			if (!(c instanceof JumpingCollatz)) continue;
+			final JumpingCollatz jumpingCollatz = (JumpingCollatz) c;
+			assertEquals(c.toString(), 8400511, jumpingCollatz.maximizeInterleaved(1, 10_000_000));
+			for (int i=0; i<10; ++i) {
+				final long max = 1 + random.nextInt(100_000_000);
+				final long min = Math.max(1, max - random.nextInt(100_000_000));
+				assertEquals(c.maximize(min, max), jumpingCollatz.maximizeInterleaved(min, max));
+			}
+		}
+	}
+
+	public void testVectorCollatz() {
+		final Random random = new Random(8);
+		final JumpingTable jumpingTable = JumpingTable.newTable(17);
+		final CollatzTable collatzTable = CollatzTable.newTable(17).initialize(simpleCollatz);
+		final JumpingCollatz jumpingCollatz = new JumpingCollatz(jumpingTable, collatzTable);
+		final VectorCollatz vectorCollatz = new VectorCollatz(jumpingTable, collatzTable);
+		assertEquals(8400511, vectorCollatz.maximize(1, 10_000_000));
+		for (int max=1; max<100; ++max) assertEquals(simpleCollatz.maximize(1, max), vectorCollatz.maximize(1, max));
+		for (int i=0; i<10; ++i) {
+			final long max = 1 + random.nextInt(100_000_000);
+			final long min = Math.max(1, max - random.nextInt(100_000_000));
+			assertEquals(jumpingCollatz.maximize(min, max), vectorCollatz.maximize(min, max));
+		}
+		// Starts this big make some lanes overflow 64 bits.
+		final long max = jumpingCollatz.limit() - 1;
+		assertEquals(jumpingCollatz.maximize(max - 1_000_000, max), vectorCollatz.maximize(max - 1_000_000, max));
+	}
+
+	public void testWideCollatz() {
+		final WideCollatz c = new WideCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		final Random random = new Random(9);
+		for (int i=0; i<300; ++i) {
+			// Up to 127 bits, the trajectories often exceed 127 bits, too.
+			final BigInteger start = new BigInteger(1 + random.nextInt(i<200 ? 127 : 300), random).add(BigInteger.ONE);
+			assertEquals(start.toString(), referenceDelay(start), c.delay(start));
+			if (start.bitLength() < 128) assertEquals(start.toString(), referenceDelay(start), c.delay(start.longValue(), start.shiftRight(64).longValue()));
+		}
+		for (final int bits : new int[] {63, 64, 100, 126}) {
+			final BigInteger min = BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.valueOf(500));
+			final BigInteger max = min.add(BigInteger.valueOf(1000));
+			BigInteger expected = null;
+			int longest = -1;
+			for (BigInteger n=min; n.compareTo(max) <= 0; n=n.add(BigInteger.ONE)) {
+				final int delay = referenceDelay(n);
+				if (delay <= longest) continue;
+				expected = n;
+				longest = delay;
+			}
+			assertEquals(expected, c.maximize(min, max));
+			assertEquals(expected, c.maximizeInParallel(min, max));
+		}
+		// Ranges starting below max/2 get sieved like in the JumpingCollatz.
+		final JumpingCollatz jumpingCollatz = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		assertEquals(BigInteger.valueOf(8400511), c.maximize(BigInteger.ONE, BigInteger.valueOf(10_000_000)));
+		for (int i=0; i<20; ++i) {
+			final long max = 1 + random.nextInt(10_000_000);
+			final long min = Math.max(1, max - random.nextInt(10_000_000));
+			assertEquals(jumpingCollatz.maximize(min, max), c.maximize(min, max));
+			assertEquals(BigInteger.valueOf(jumpingCollatz.maximize(min, max)), c.maximizeInParallel(BigInteger.valueOf(min), BigInteger.valueOf(max)));
+		}
+	}
+
+	private static int referenceDelay(BigInteger n) {
+		int result = 0;
+		for (; !n.equals(BigInteger.ONE); ++result) n = n.testBit(0) ? n.multiply(BigInteger.valueOf(3)).add(BigInteger.ONE) : n.shiftRight(1);
+		return result;
+	}
+
+	public void testTrajectoryStatistics() {
+		final Random random = new Random(17);
+		for (final Collatz c : collatzs) {
+			if (!(c instanceof JumpingCollatz)) continue;
+			final JumpingCollatz jumpingCollatz = (JumpingCollatz) c;
+			assertEquals("TrajectoryStatistics-0-0-1", jumpingCollatz.statistics(1).toString());
+			assertEquals("TrajectoryStatistics-111-41-9232", jumpingCollatz.statistics(27).toString());
+			// The path record with its peak needing 126 bits.
+			final TrajectoryStatistics record = jumpingCollatz.statistics(jumpingCollatz.limit() - 1);
+			assertEquals(new BigInteger("64024667322193133530165877294264738020"), record.peak());
+			assertEquals(referenceStatistics(BigInteger.valueOf(jumpingCollatz.limit() - 1)), record.toString());
+			for (int i=0; i<1000; ++i) {
+				final long start = 1 + (random.nextLong() >>> 4 + random.nextInt(59));
+				final TrajectoryStatistics statistics = jumpingCollatz.statistics(start);
+				assertEquals(referenceStatistics(BigInteger.valueOf(start)), statistics.toString());
+				assertEquals(c.delay(start), statistics.delay());
+			}
+		}
+		final JumpingTable table = JumpingTable.newTable(10);
+		assertSame(table.peaks(), table.peaks());
+		try {
+			JumpPeaks.newPeaks(JumpPeaks.MAX_EVEN_STEPS + 1);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static String referenceStatistics(BigInteger n) {
+		int delay = 0;
+		int oddSteps = 0;
+		BigInteger peak = n;
+		for (; !n.equals(BigInteger.ONE); ++delay) {
+			if (n.testBit(0)) {
+				n = n.multiply(BigInteger.valueOf(3)).add(BigInteger.ONE);
+				peak = peak.max(n);
+				++oddSteps;
+			} else {
+				n = n.shiftRight(1);
+			}
+		}
+		return "TrajectoryStatistics-" + delay + "-" + oddSteps + "-" + peak;
+	}
+
+	public void testGlide() {
+		final Random random = new Random(21);
+		for (final int log2 : new int[] {3, 8, 16}) {
+			final GlideSieve sieve = GlideSieve.newSieve(log2);
+			assertEquals(0, sieve.glide(1));
+			assertEquals(1, sieve.glide(2));
+			assertEquals(6, sieve.glide(3));
+			assertEquals(96, sieve.glide(27));
+			for (long n=1; n<10000; ++n) assertEquals(referenceGlide(BigInteger.valueOf(n)), sieve.glide(n));
+			for (int i=0; i<1000; ++i) {
+				final long n = 1 + (random.nextLong() >>> 2 + random.nextInt(61));
+				assertEquals(referenceGlide(BigInteger.valueOf(n)), sieve.glide(n));
+			}
+			for (int i=0; i<10; ++i) {
+				final long max = 1 + (random.nextLong() >>> 4 + random.nextInt(40));
+				final long min = Math.max(1, max - random.nextInt(100_000));
+				long expected = -1;
+				int longest = -1;
+				for (long n=min; n<=max; ++n) {
+					final int glide = referenceGlide(BigInteger.valueOf(n));
+					if (glide <= longest) continue;
+					expected = n;
+					longest = glide;
+				}
+				assertEquals(expected, sieve.maximize(min, max));
+			}
+		}
+		// A start whose trajectory exceeds 64 bits before dropping below it.
+		final long start = JumpingCollatz.LIMIT - 1;
+		assertEquals(referenceGlide(BigInteger.valueOf(start)), GlideSieve.glideOf(start));
+		assertEquals(27, GlideSieve.maximizeGlide(1, 50));
+	}
+
+	public void testVerifier() {
+		final Verifier.Report report = new Verifier(GlideSieve.newSieve(16), 10_000).verify(1, 100_000_000);
+		assertEquals(ImmutableList.of(), report.anomalies());
+		assertTrue(report.checked() < report.to() / 20);
+		assertTrue(report.numbersPerSecond() > 0);
+
+		// With a tiny budget, all checked starts having a longer glide get reported.
+		final int modulus = 3 << 8;
+		final int budget = 100;
+		final List<Verifier.Anomaly> expected = new ArrayList<>();
+		for (long n=1; n<100*modulus; ++n) {
+			if (n >= modulus && n%3 == 2) continue;
+			if (referenceGlide(BigInteger.valueOf(n)) > budget) expected.add(new Verifier.Anomaly(n, Verifier.Reason.BUDGET_EXCEEDED));
+		}
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, new Verifier(GlideSieve.newSieve(8), budget).verify(1, 100*modulus - 1).anomalies());
+		assertEquals(expected.subList(1, expected.size()), new Verifier(GlideSieve.newSieve(8), budget).verify(expected.get(0).n() + 1, 100*modulus - 1).anomalies());
+	}
+
+	private static int referenceGlide(BigInteger n) {
+		if (n.equals(BigInteger.ONE)) return 0;
+		int result = 0;
+		for (BigInteger x=n; x.compareTo(n) >= 0; ++result) x = x.testBit(0) ? x.multiply(BigInteger.valueOf(3)).add(BigInteger.ONE) : x.shiftRight(1);
+		return result;
+	}
+
+	public void testMemoizing() {
+		for (final CollatzTable table : new CollatzTable[] {CollatzTable.newTable(22), new OffHeapCollatzTable(22)}) {
+			final CollatzTable initialized = table.initialize(simpleCollatz, 17);
+			final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), initialized).memoizing();
+			final long readLimit = initialized.readLimit();
+			final long writeLimit = initialized.writeLimit();
+			assertEquals(-1, initialized.getLazily(writeLimit - 1));
+
+			final Random random = new Random(19);
+			final long[] starts = random.longs(100_000, 1, 1L << 40).toArray();
+			// Concurrently, so that the table gets read and written by multiple threads.
+			final int[] delays = Arrays.stream(starts).parallel().mapToInt(c::delay).toArray();
+			for (int i=0; i<starts.length; ++i) assertEquals(delays[i], c.delay(starts[i]));
+			for (int i=0; i<1000; ++i) assertEquals(slowCollatz.delay(starts[i] & 0xFFFF_FFFL | 1), c.delay(starts[i] & 0xFFFF_FFFL | 1));
+			assertEquals(8400511, c.maximize(1, 10_000_000));
+
+			int stored = 0;
+			for (long n=readLimit+1; n<writeLimit; n+=2) {
+				final int delay = initialized.getLazily(n);
+				if (delay < 0) continue;
+				assertEquals(simpleCollatz.delay(n), delay);
+				++stored;
+			}
+			assertTrue(stored > 1000);
+		}
+	}
+
+	public void testHotPathCounters() throws Exception {
+		if (HotPathCounters.ENABLED) {
+			checkHotPathCounters();
+			return;
+		}
+		final List<HotPathCounters.Snapshot> snapshots = new ArrayList<>();
+		HotPathCounters.setReporter(snapshots::add);
+		try {
+			final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(JumpingTable.newTable(17), 20));
+			assertEquals(8400511, c.maximize(1, 10_000_000));
+			assertEquals(ImmutableList.of(), snapshots);
+		} finally {
+			HotPathCounters.setReporter(System.err::println);
+		}
+		// As the switch is a constant, the counting gets checked by a JVM having it enabled.
+		final Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+				"-ea", "-D" + HotPathCounters.PROPERTY + "=true", "-cp", System.getProperty("java.class.path"), getClass().getName())
+				.redirectErrorStream(true)
+				.start();
+		final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+		assertEquals(output, 0, process.waitFor());
+	}
+
+	/** Run the checks needing the counters in a JVM started with the counters enabled. */
+	public static void main(String[] args) throws IOException {
+		checkState(HotPathCounters.ENABLED);
+		new CollatzTest().checkHotPathCounters();
+		new CollatzTest().testFlightRecorderEvents();
+	}
+
+	private void checkHotPathCounters() {
+		final List<HotPathCounters.Snapshot> snapshots = Collections.synchronizedList(new ArrayList<>());
+		HotPathCounters.setReporter(snapshots::add);
+		try {
+			final CollatzTable table = CollatzTable.newTable(JumpingTable.newTable(17), 20);
+			final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), table);
+			assertEquals(8400511, c.maximize(1, 10_000_000));
+			assertEquals(1, snapshots.size());
+			final HotPathCounters.Snapshot snapshot = snapshots.get(0);
+			assertTrue(snapshot.starts() > 0 && snapshot.jumps() > 0 && snapshot.lookups() > 0 && snapshot.hopeless() > 0);
+			assertEquals(0, snapshot.wide());
+			long lookups = 0;
+			for (int bits=0; bits<=64; ++bits) lookups += snapshot.lookups(bits);
+			assertEquals(snapshot.lookups(), lookups);
+			// Nothing above the readLimit gets looked up.
+			assertEquals(0, snapshot.lookups(65 - Long.numberOfLeadingZeros(table.readLimit() - 1)));
+			c.maximizeInParallel(1, 10_000_000);
+			assertEquals(2, snapshots.size());
+			assertEquals(snapshot.starts(), snapshots.get(1).starts());
+
+			// Concurrent calls get counted separately.
+			snapshots.clear();
+			c.maximizePart(1, 10_000_000, 5_000_000, 5_999_999);
+			c.maximizePart(1, 10_000_000, 9_000_000, 9_999_999);
+			final long[] expected = {snapshots.get(0).starts(), snapshots.get(1).starts()};
+			assertTrue(expected[0] != expected[1]);
+			snapshots.clear();
+			final Thread thread = new Thread(() -> c.maximizePart(1, 10_000_000, 5_000_000, 5_999_999));
+			thread.start();
+			c.maximizePart(1, 10_000_000, 9_000_000, 9_999_999);
+			Uninterruptibles.joinUninterruptibly(thread);
+			final long[] actual = {snapshots.get(0).starts(), snapshots.get(1).starts()};
+			Arrays.sort(expected);
+			Arrays.sort(actual);
+			assertTrue(Arrays.equals(expected, actual));
+		} finally {
+			HotPathCounters.setReporter(System.err::println);
+		}
+	}
+
+	public void testFlightRecorderEvents() throws IOException {
+		final Path file = Files.createTempFile("collatz", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(CollatzEvents.TableInitialization.class);
+			recording.enable(CollatzEvents.JumpingTableCreation.class);
+			recording.enable(CollatzEvents.MaximizeSegment.class);
+			recording.start();
+			final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(10), CollatzTable.newTable(16).initialize(simpleCollatz));
+			assertEquals(837799, c.maximize(1, 1_000_000));
+			recording.stop();
+			recording.dump(file);
+		}
+		try {
+			final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			final List<String> names = new ArrayList<>();
+			for (final RecordedEvent event : events) names.add(event.getEventType().getName());
+			assertEquals(ImmutableList.of(
+					"maaartin.collatz.JumpingTableCreation",
+					"maaartin.collatz.TableInitialization",
+					"maaartin.collatz.MaximizeSegment"), names);
+			assertEquals(10, events.get(0).getInt("evenSteps"));
+			assertEquals(1 << 10, events.get(0).getLong("entries"));
+			assertEquals(2, events.get(1).getLong("readLimitBefore"));
+			assertEquals(1 << 17, events.get(1).getLong("readLimitAfter") + 2);
+			final RecordedEvent segment = events.get(2);
+			assertEquals(500_000, segment.getLong("from"));
+			assertEquals(1_000_000, segment.getLong("to"));
+			assertEquals(837799, segment.getLong("bestN"));
+			assertEquals(524, segment.getInt("bestDelay"));
+			if (HotPathCounters.ENABLED) {
+				assertTrue(segment.getLong("evaluated") > segment.getLong("pruned"));
+				assertTrue(segment.getLong("pruned") > 0);
+			} else {
+				assertEquals(0, segment.getLong("evaluated"));
+				assertEquals(0, segment.getLong("pruned"));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	public void testMaximizeSegmentEvents() throws IOException {
+		final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(10), CollatzTable.newTable(16).initialize(simpleCollatz));
+		// Also the small ranges and the edges left over by the parallel tasks must be covered.
+		checkSegments(1, 20, () -> c.maximize(1, 20));
+		checkSegments(1000, 1010, () -> c.maximize(1000, 1010));
+		checkSegments(500_000, 1_000_000, () -> c.maximize(1, 1_000_000));
+		checkSegments(1000, 1010, () -> c.maximizeInParallel(1000, 1010));
+		checkSegments(9000, 9999, () -> c.maximizeInParallel(9000, 9999));
+		checkSegments(50_000, 100_000, () -> c.maximizeInParallel(1, 100_000));
+		checkSegments(5_000_000, 10_000_000, () -> c.maximizeInParallel(1, 10_000_000));
+	}
+
+	/** Check that the {@link CollatzEvents.MaximizeSegment}s emitted by the {@code maximize} cover exactly the numbers between {@code from} and {@code to}. */
+	private static void checkSegments(long from, long to, Runnable maximize) throws IOException {
+		final Path file = Files.createTempFile("collatz", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(CollatzEvents.MaximizeSegment.class);
+			recording.start();
+			maximize.run();
+			recording.stop();
+			recording.dump(file);
+		}
+		try {
+			final List<RecordedEvent> events = new ArrayList<>(RecordingFile.readAllEvents(file));
+			events.sort(Comparator.comparingLong(event -> event.getLong("from")));
+			long next = from;
+			for (final RecordedEvent event : events) {
+				assertEquals(next, event.getLong("from"));
+				next = event.getLong("to") + 1;
+			}
+			assertEquals(to + 1, next);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	public void testMaximizeInParallel() {
+		final Random random = new Random(5);
+		for (final Collatz c : collatzs) {
+			if (!(c instanceof JumpingCollatz)) continue;
+			final JumpingCollatz jumpingCollatz = (JumpingCollatz) c;
+			assertEquals(c.toString(), 9257, jumpingCollatz.maximizeInParallel(9000, 9999));
+			assertEquals(c.toString(), 8400511, jumpingCollatz.maximizeInParallel(1, 10_000_000));
+			for (int i=0; i<10; ++i) {
+				final long max = 1 + random.nextInt(100_000_000);
+				final long min = Math.max(1, max - random.nextInt(10_000_000));
+				assertEquals(c.maximize(min, max), jumpingCollatz.maximizeInParallel(min, max));
+			}
+		}
+	}
+
+	public void testInitializeInParallel() {
+		final CollatzTable expected = CollatzTable.newTable(20).initialize(simpleCollatz);
+		final CollatzTable small = CollatzTable.newTable(20).initializeInParallel(simpleCollatz, 17);
+		final Collatz c = new JumpingCollatz(JumpingTable.newTable(17), small);
+		final CollatzTable actual = small.initializeInParallel(c);
+		assertEquals(expected.readLimit(), actual.readLimit());
+		for (long n=1; n<actual.readLimit(); n+=2) assertEquals(expected.get(n), actual.get(n));
+	}
+
+	public void testOffHeapCollatzTable() {
+		final CollatzTable expected = CollatzTable.newTable(20).initialize(simpleCollatz);
+		final CollatzTable actual = new OffHeapCollatzTable(20).initializeInParallel(simpleCollatz);
+		assertEquals(expected.readLimit(), actual.readLimit());
+		assertEquals(expected.writeLimit(), actual.writeLimit());
+		for (long n=1; n<actual.readLimit(); n+=2) assertEquals(expected.get(n), actual.get(n));
+		assertEquals(8400511, new JumpingCollatz(JumpingTable.newTable(17), actual).maximize(8_000_000, 9_000_000));
+	}
+
+	public void testCompressedCollatzTable() {
+		final CollatzTable expected = CollatzTable.newTable(20).initialize(simpleCollatz);
+		final CompressedCollatzTable compressed = CompressedCollatzTable.compress(expected);
+		final CompressedCollatzTable built = CompressedCollatzTable.newTable(simpleCollatz, 20);
+		assertTrue(compressed.memoryUsage() < expected.readLimit());
+		for (long n=1; n<compressed.readLimit(); n+=2) {
+			assertEquals(expected.get(n), compressed.get(n));
+			assertEquals(expected.get(n), built.get(n));
+		}
+		assertEquals(8400511, new JumpingCollatz(JumpingTable.newTable(17), compressed).maximize(8_000_000, 9_000_000));
+	}
+
+	public void testCollatzTableFile() throws IOException {
+		final CollatzTable expected = CollatzTable.newTable(20).initialize(simpleCollatz, 18);
+		final File file = File.createTempFile("collatz", ".table");
+		try {
+			CollatzTableFile.save(expected, file.toPath());
+			final CollatzTable mapped = CollatzTableFile.map(file.toPath(), true);
+			final CollatzTable loaded = CollatzTableFile.load(file.toPath());
+			assertEquals(expected.readLimit(), mapped.readLimit());
+			assertEquals(expected.readLimit(), loaded.readLimit());
+			assertEquals(expected.writeLimit(), loaded.writeLimit());
+			for (long n=1; n<expected.readLimit(); n+=2) {
+				assertEquals(expected.get(n), mapped.get(n));
+				assertEquals(expected.get(n), loaded.get(n));
+			}
+			assertEquals(8400511, new JumpingCollatz(JumpingTable.newTable(17), mapped).maximize(8_000_000, 9_000_000));
+			// Every kind of table gets saved the same way, no matter whether it gets copied in bulk.
+			final CollatzTable offHeap = new OffHeapCollatzTable(20).initialize(simpleCollatz, 18);
+			for (final CollatzTable table : new CollatzTable[] {offHeap, mapped, CompressedCollatzTable.compress(expected)}) {
+				CollatzTableFile.save(table, file.toPath());
+				final CollatzTable resaved = CollatzTableFile.map(file.toPath(), true);
+				assertEquals(table.readLimit(), resaved.readLimit());
+				for (long n=1; n<table.readLimit(); n+=2) assertEquals(expected.get(n), resaved.get(n));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testBulkCopy() throws IOException {
+		final CollatzTable expected = CollatzTable.newTable(20).initialize(simpleCollatz, 18);
+		final File file = File.createTempFile("collatz", ".table");
+		try {
+			CollatzTableFile.save(expected, file.toPath());
+			final CollatzTable offHeap = new OffHeapCollatzTable(20).initialize(simpleCollatz, 18);
+			final CollatzTable mapped = CollatzTableFile.map(file.toPath(), false);
+			// The buffers are big-endian, but the entries must get copied as little-endian shorts anyway.
+			for (final CollatzTable table : new CollatzTable[] {expected, offHeap, mapped, CompressedCollatzTable.compress(expected)}) {
+				final ByteBuffer target = ByteBuffer.allocate(2002);
+				target.position(2);
+				table.getAll(100, target);
+				assertFalse(target.hasRemaining());
+				for (int i=0; i<1000; ++i) assertEquals(expected.get(201 + 2*i), Short.reverseBytes(target.getShort(2 + 2*i)));
+			}
+			final ByteBuffer source = ByteBuffer.allocate(2000);
+			expected.getAll(100, source);
+			source.flip();
+			for (final CollatzTable table : new CollatzTable[] {CollatzTable.newTable(20), new OffHeapCollatzTable(20)}) {
+				table.setAll(100, source);
+				assertEquals(0, source.position());
+				for (int i=0; i<1000; ++i) assertEquals(expected.get(201 + 2*i), table.getLazily(201 + 2*i));
+				final ByteBuffer copy = ByteBuffer.allocate(2000);
+				table.getAll(100, copy);
+				assertEquals(source, copy.flip());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testJumpingTableFile() throws IOException {
+		final Path directory = Files.createTempDirectory("collatz");
+		try {
+			for (final int evenSteps : new int[] {5, 17, 18}) {
+				final JumpingTable expected = JumpingTable.newTable(evenSteps);
+				final Path file = directory.resolve("jumping" + evenSteps + ".table");
+				JumpingTableFile.save(expected, file);
+				final JumpingTable loaded = JumpingTableFile.load(file);
+				assertEquals(expected.getClass(), loaded.getClass());
+				assertEquals(evenSteps, loaded.evenSteps());
+				for (int i=0; i<=expected.mask(); ++i) {
+					assertEquals(expected.oddSteps(i), loaded.oddSteps(i));
+					assertEquals(expected.addend(i), loaded.addend(i));
+					assertEquals(expected.peaks().peakMultiplier(i), loaded.peaks().peakMultiplier(i));
+					assertEquals(expected.peaks().peakThreshold(i), loaded.peaks().peakThreshold(i));
+				}
+				assertEquals(evenSteps, JumpingTableFile.loadOrCreate(file, evenSteps).evenSteps());
+			}
+			final Path created = directory.resolve("created.table");
+			final CollatzTable collatzTable = CollatzTable.newTable(17).initialize(simpleCollatz);
+			assertEquals(8400511, new JumpingCollatz(JumpingTableFile.loadOrCreate(created, 12), collatzTable).maximize(8_000_000, 9_000_000));
+			assertEquals(8400511, new JumpingCollatz(JumpingTableFile.loadOrCreate(created, 12), collatzTable).maximize(8_000_000, 9_000_000));
+			try {
+				JumpingTableFile.loadOrCreate(created, 13);
+				fail();
+			} catch (final IOException e) {
+				// expected
+			}
+			try (RandomAccessFile file = new RandomAccessFile(created.toFile(), "rw")) {
+				file.seek(100);
+				final int b = file.read();
+				file.seek(100);
+				file.write(b ^ 1);
+			}
+			try {
+				JumpingTableFile.load(created);
+				fail();
+			} catch (final IOException e) {
+				assertEquals("Checksum mismatch", e.getMessage());
+			}
+		} finally {
+			try (Stream<Path> paths = Files.list(directory)) {
+				paths.forEach(p -> p.toFile().delete());
+			}
+			Files.delete(directory);
+		}
+	}
+
+	public void testMaximizeJob() throws IOException {
+		final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		final File file = File.createTempFile("collatz", ".checkpoint");
+		try {
+			file.delete();
+			assertEquals(8400511, new MaximizeJob(c, 1, 10_000_000, 300_000, file.toPath()).run());
+			// Simulate a crash by keeping only five records and a part of the sixth.
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(64 + 5*16 + 7);
+			}
+			assertEquals(8400511, new MaximizeJob(c, 1, 10_000_000, 300_000, file.toPath()).run());
+			assertEquals(8400511, new MaximizeJob(c, 1, 10_000_000, 300_000, file.toPath()).run());
+			try {
+				new MaximizeJob(c, 1, 10_000_001, 300_000, file.toPath()).run();
+				fail();
+			} catch (final IOException e) {
+				// expected
+			}
+			file.delete();
+			assertEquals(c.maximize(5_000_000, 6_000_000), new MaximizeJob(c, 5_000_000, 6_000_000, 77_777, file.toPath()).run());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testMaximizeCoordinator() throws Exception {
+		final File directory = Files.createTempDirectory("collatz").toFile();
+		final File cache = new File(directory, "table");
+		try (MaximizeCoordinator coordinator = new MaximizeCoordinator(1, 10_000_000, 200_000, 0, 10_000)) {
+			final long[] result = new long[1];
+			final Thread coordinatorThread = new Thread(() -> {
+				try {
+					result[0] = coordinator.run();
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			coordinatorThread.start();
+
+			// A worker dying after having got its first chunk.
+			try (Socket socket = new Socket("localhost", coordinator.port())) {
+				final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+				out.writeLong(MaximizeCoordinator.MAGIC);
+				out.writeInt(MaximizeCoordinator.VERSION);
+				out.flush();
+				final DataInputStream in = new DataInputStream(socket.getInputStream());
+				assertEquals(1, in.readLong());
+				assertEquals(10_000_000, in.readLong());
+				assertEquals(0, in.readInt());
+			}
+
+			final JumpingTable jumpingTable = JumpingTable.newTable(17);
+			final List<Thread> workers = new ArrayList<>();
+			for (int i=0; i<2; ++i) {
+				// The second worker uses the table cached by the first one.
+				final CollatzTable table = MaximizeWorker.cachedTable(jumpingTable, cache.toPath(), 17);
+				assertTrue(cache.exists());
+				final MaximizeWorker worker = new MaximizeWorker(new JumpingCollatz(jumpingTable, table));
+				final int connections = 1 + i;
+				final Thread thread = new Thread(() -> {
+					try {
+						worker.run("localhost", coordinator.port(), connections);
+					} catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				thread.start();
+				workers.add(thread);
+			}
+			coordinatorThread.join();
+			for (final Thread thread : workers) thread.join();
+			assertEquals(8400511, result[0]);
+
+			// Workers starting at once all get the table and leave no temporary files behind.
+			final File racedCache = new File(directory, "raced");
+			final long readLimit = CollatzTableFile.map(cache.toPath(), false).readLimit();
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+			final List<Thread> racers = new ArrayList<>();
+			for (int i=0; i<3; ++i) {
+				final Thread thread = new Thread(() -> {
+					try {
+						start.await();
+						assertEquals(readLimit, MaximizeWorker.cachedTable(jumpingTable, racedCache.toPath(), 17).readLimit());
+					} catch (final Throwable e) {
+						failures.add(e);
+					}
+				});
+				thread.start();
+				racers.add(thread);
+			}
+			start.countDown();
+			for (final Thread thread : racers) thread.join();
+			assertEquals(ImmutableList.of(), failures);
+			assertEquals(2, directory.listFiles().length);
+
+			// A cache of another size or with a corrupted entry gets rebuilt.
+			assertTrue(MaximizeWorker.cachedTable(jumpingTable, cache.toPath(), 18).readLimit() > readLimit);
+			assertEquals(readLimit, MaximizeWorker.cachedTable(jumpingTable, cache.toPath(), 17).readLimit());
+			try (RandomAccessFile file = new RandomAccessFile(cache, "rw")) {
+				file.seek(file.length() - 1);
+				final int corrupted = file.read() ^ 1;
+				file.seek(file.length() - 1);
+				file.write(corrupted);
+			}
+			final CollatzTable rebuilt = MaximizeWorker.cachedTable(jumpingTable, cache.toPath(), 17);
+			assertEquals(simpleCollatz.delay(readLimit-1), rebuilt.get(readLimit-1));
+			CollatzTableFile.map(cache.toPath(), true);
+		} finally {
+			for (final File file : directory.listFiles()) file.delete();
+			directory.delete();
+		}
+		try {
+			new MaximizeCoordinator(1, JumpingCollatz.LIMIT, 1_000_000, 0, 10_000).close();
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testMaximizeCoordinator_mismatch() throws Exception {
+		// Four chunks processed by fake workers, two of which answer the second chunk differently.
+		try (MaximizeCoordinator coordinator = new MaximizeCoordinator(1, 2999, 500, 0, 10_000)) {
+			final Throwable[] failure = new Throwable[1];
+			final Thread coordinatorThread = new Thread(() -> {
+				try {
+					coordinator.run();
+				} catch (final Throwable e) {
+					failure[0] = e;
+				}
+			});
+			coordinatorThread.setDaemon(true);
+			coordinatorThread.start();
+			final List<Socket> sockets = new ArrayList<>();
+			try {
+				for (int i=0; i<4; ++i) {
+					final Socket socket = new Socket("localhost", coordinator.port());
+					sockets.add(socket);
+					final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+					out.writeLong(MaximizeCoordinator.MAGIC);
+					out.writeInt(MaximizeCoordinator.VERSION);
+					out.flush();
+					final DataInputStream in = new DataInputStream(socket.getInputStream());
+					assertEquals(1, in.readLong());
+					assertEquals(2999, in.readLong());
+					assertEquals(i, readChunk(socket));
+				}
+				// As nothing is pending anymore, every worker having answered gets the next chunk processed by a single other worker.
+				answer(sockets.get(0), 0, 1600, 1);
+				assertEquals(1, readChunk(sockets.get(0)));
+				answer(sockets.get(1), 1, 2000, 2);
+				assertEquals(2, readChunk(sockets.get(1)));
+				answer(sockets.get(0), 1, 2000, 3);
+				assertEquals(3, readChunk(sockets.get(0)));
+				answer(sockets.get(2), 2, 2100, 4);
+				answer(sockets.get(3), 3, 2900, 5);
+				coordinatorThread.join();
+			} finally {
+				for (final Socket socket : sockets) socket.close();
+			}
+			assertTrue(failure[0] instanceof IllegalStateException);
+			assertEquals("Chunks answered differently: [1]", failure[0].getMessage());
+		}
+	}
+
+	/** Return the index of the chunk sent by the coordinator, skipping its range. */
+	private static int readChunk(Socket socket) throws IOException {
+		final DataInputStream in = new DataInputStream(socket.getInputStream());
+		final int result = in.readInt();
+		in.readLong();
+		in.readLong();
+		return result;
+	}
+
+	private static void answer(Socket socket, int chunk, long n, long fingerprint) throws IOException {
+		final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+		out.writeInt(chunk);
+		out.writeLong(n);
+		out.writeInt(100);
+		out.writeLong(fingerprint);
+		out.flush();
+	}
+
+	public void testDelayRecordScanner() throws InterruptedException {
+		final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		final DelayRecordScanner scanner = new DelayRecordScanner(c);
+		final List<DelayRecord> expected = new ArrayList<>();
+		final long[] records = Records.getDelayRecords();
+		for (int i=0; records[i+1] <= 100_000_000; i+=2) expected.add(new DelayRecord(records[i+1], (int) records[i]));
+
+		final List<DelayRecord> actual = new ArrayList<>();
+		scanner.scan(1, 100_000_000, -1, actual::add);
+		assertEquals(expected, actual);
+
+		// Resuming in the middle.
+		actual.clear();
+		final DelayRecord previous = expected.get(40);
+		scanner.scan(previous.n() + 1, 100_000_000, previous.delay(), actual::add);
+		assertEquals(expected.subList(41, expected.size()), actual);
+
+		assertEquals(expected, collect(scanner.publisher(1, 100_000_000, -1)));
+	}
+
+	public void testPathRecordScanner() throws InterruptedException {
+		final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		final PathRecordScanner scanner = new PathRecordScanner(JumpingTable.newTable(17));
+		final List<PathRecord> expected = new ArrayList<>();
+		final BigInteger[] records = Records.getPathRecords();
+		for (int i=0; i<records.length; i+=2) {
+			final PathRecord record = new PathRecord(records[i].longValueExact(), records[i+1]);
+			// All known records get validated using their peaks only.
+			assertEquals(record.peak(), c.statistics(record.n()).peak());
+			if (record.n() <= 100_000_000) expected.add(record);
+		}
+
+		final List<PathRecord> actual = new ArrayList<>();
+		scanner.scan(1, 100_000_000, BigInteger.ZERO, actual::add);
+		assertEquals(expected, actual);
+
+		// Resuming in the middle.
+		actual.clear();
+		final PathRecord previous = expected.get(20);
+		scanner.scan(previous.n() + 1, 100_000_000, previous.peak(), actual::add);
+		assertEquals(expected.subList(21, expected.size()), actual);
+
+		assertEquals(expected, collect(scanner.publisher(1, 100_000_000, BigInteger.ZERO)));
+	}
+
+	/** Return all items published, after checking that the publisher completes within a minute. */
+	private static <T> List<T> collect(Flow.Publisher<T> publisher) throws InterruptedException {
+		final List<T> result = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		publisher.subscribe(new Flow.Subscriber<T>() {
+			@Override public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override public void onNext(T item) {
+				result.add(item);
+			}
+
+			@Override public void onError(Throwable throwable) {
+				throw new AssertionError(throwable);
+			}
+
+			@Override public void onComplete() {
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(1, TimeUnit.MINUTES));
+		return result;
+	}
+
+	public void testDelayHistogram() {
+		final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		final long min = 12345;
+		final long max = 456789;
+		final DelayHistogram histogram = DelayHistogram.compute(c, min, max);
+		final int[] delays = new int[(int) (max-min+1)];
+		for (long n=min; n<=max; ++n) delays[(int) (n-min)] = simpleCollatz.delay(n);
+		Arrays.sort(delays);
+		assertEquals(delays.length, histogram.total());
+		assertEquals(delays[delays.length-1], histogram.maxDelay());
+		assertEquals(Arrays.stream(delays).average().getAsDouble(), histogram.mean(), 1e-9);
+		assertEquals(delays[0], histogram.percentile(0));
+		assertEquals(delays[(delays.length+1)/2 - 1], histogram.percentile(0.5));
+		assertEquals(delays[delays.length-1], histogram.percentile(1));
+		assertEquals(Arrays.stream(delays).filter(d -> d == 100).count(), histogram.count(100));
+		assertEquals(Arrays.stream(delays).filter(d -> d >= 300).count(), histogram.countAtLeast(300));
+	}
+
+	public void testMaximizePart() {
+		final Random random = new Random(10);
+		final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		// The fingerprint doesn't depend on the tables, so that the workers may use different ones.
+		final JumpingCollatz other = new JumpingCollatz(JumpingTable.newTable(12), CollatzTable.newTable(20).initialize(simpleCollatz));
+		for (int i=0; i<20; ++i) {
+			final long max = 1 + random.nextInt(10_000_000);
+			final long min = Math.max(1, max - random.nextInt(10_000_000));
+			final long parts = 1 + random.nextInt(20);
+			long result = -1;
+			int longest = -1;
+			final long effectiveMin = JumpingCollatz.effectiveMin(min, max);
+			for (long from=effectiveMin; from<=max; from+=(max-effectiveMin)/parts + 1) {
+				final long n = c.maximizePart(min, max, from, Math.min(max, from + (max-effectiveMin)/parts));
+				final JumpingCollatz.State state = c.maximizePartState(min, max, from, Math.min(max, from + (max-effectiveMin)/parts));
+				final JumpingCollatz.State otherState = other.maximizePartState(min, max, from, Math.min(max, from + (max-effectiveMin)/parts));
+				assertEquals(n, state.result);
+				assertEquals(n, otherState.result);
+				assertEquals(state.fingerprint, otherState.fingerprint);
+				if (n<0) continue;
+				final int delay = c.delay(n);
+				if (delay < longest || delay == longest && n > result) continue;
+				result = n;
+				longest = delay;
+			}
+			assertEquals(c.maximize(min, max), result);
+		}
+	}
+
+	public void testMaximizePart_narrow() {
+		final JumpingCollatz c = new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz));
+		for (final long min : new long[] {1413, 2349, 2781, 3141, 3717}) assertEquals(simpleCollatz.maximize(min, min+18), c.maximizePart(min, min+18, min, min+18));
+		final Random random = new Random(11);
+		for (int i=0; i<2000; ++i) {
+			final long max = 100 + random.nextInt(1_000_000);
+			final long min = max - random.nextInt(100);
+			assertEquals(simpleCollatz.maximize(min, max), c.maximizePart(min, max, min, max));
+		}
+	}
+
 	private void checkMaximize(int min, int max) {
 		final long expected = collatzs.get(0).maximize(min, max);
 		for (final Collatz c : collatzs.subList(1, collatzs.size())) {
@@ -137,7 +1009,8 @@ public class CollatzTest extends TestCase {
 	private static List<Collatz> collatzs = ImmutableList.of(
 			slowCollatz,
 			//			new FiddlingCollatz(),
-			new JumpingCollatz(JumpingTable.newTable(17), new CollatzTable(17).initialize(simpleCollatz)),
-			new JumpingCollatz(JumpingTable.newTable(18), new CollatzTable(18).initialize(simpleCollatz)),
+			new JumpingCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz)),
+			new JumpingCollatz(JumpingTable.newTable(18), CollatzTable.newTable(18).initialize(simpleCollatz)),
+			new WideCollatz(JumpingTable.newTable(17), CollatzTable.newTable(17).initialize(simpleCollatz)),
 			simpleCollatz);
 }
@@ -0,0 +1,187 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * A read-only {@link CollatzTable} storing every entry as a single byte.
+ *
+ * <p>The entries are grouped into blocks of 2<sup>{@value #LOG_BLOCK_LENGTH}</sup>, each having a base.
+ * An entry is stored as the difference to the base, if it's less than {@value #FIRST_ESCAPE}.
+ * Otherwise, it's stored as an escape, i.e., {@value #FIRST_ESCAPE} plus the ordinal of the outlier in the block,
+ * with the outliers stored as shorts in a separate array.
+ * The few blocks having too many outliers get stored as shorts completely, with all entries marked by {@value #RAW}.
+ *
+ * <p>For tables below 2<sup>28</sup>, less than 3% of the entries are outliers and less than 0.5% of the blocks are raw,
+ * which leads to about 1.2 bytes per entry.
+ */
+final class CompressedCollatzTable extends CollatzTable {
+	/** The compressed content of a part of the table, before the escape offsets get shifted to their final position. */
+	private static final class Slice {
+		short[] escapes = new short[1 << LOG_BLOCK_LENGTH];
+		int escapeCount;
+	}
+
+	private CompressedCollatzTable(byte[] data, long[] blocks, short[] escapes, long readLimit) {
+		super(readLimit, readLimit);
+		this.data = data;
+		this.blocks = blocks;
+		this.escapes = escapes;
+	}
+
+	/**
+	 * Return a table containing the delays for all odd numbers below 2<sup>logSize+1</sup>,
+	 * with the {@code initializerCollatz} getting used concurrently.
+	 */
+	static CompressedCollatzTable newTable(Collatz initializerCollatz, int logSize) {
+		checkNotNull(initializerCollatz);
+		return newTable(n -> initializerCollatz.delay(n), computeDataLength(logSize));
+	}
+
+	/** Return a table containing all readable entries of the source up to the last complete block. */
+	static CompressedCollatzTable compress(CollatzTable source) {
+		final long length = (source.readLimit() / 2) & -(1L << LOG_BLOCK_LENGTH);
+		checkArgument(length > 0 && length <= MAX_DATA_LENGTH);
+		return newTable(source::get, (int) length);
+	}
+
+	private static CompressedCollatzTable newTable(LongToIntFunction delay, int length) {
+		assert length % (1 << LOG_BLOCK_LENGTH) == 0;
+		final byte[] data = new byte[length];
+		final long[] blocks = new long[length >> LOG_BLOCK_LENGTH];
+		final int sliceCount = ((blocks.length - 1) >> LOG_SLICE_BLOCKS) + 1;
+		final Slice[] slices = new Slice[sliceCount];
+		IntStream.range(0, sliceCount).parallel().forEach(i -> {
+			final Slice slice = new Slice();
+			final int[] block = new int[1 << LOG_BLOCK_LENGTH];
+			final int to = Math.min(blocks.length, (i+1) << LOG_SLICE_BLOCKS);
+			for (int b=i << LOG_SLICE_BLOCKS; b<to; ++b) {
+				for (int j=0; j<block.length; ++j) block[j] = delay.applyAsInt(2L * ((b << LOG_BLOCK_LENGTH) + j) + 1);
+				blocks[b] = compressBlock(block, data, b << LOG_BLOCK_LENGTH, slice);
+			}
+			slices[i] = slice;
+		});
+
+		long escapeCount = 0;
+		for (final Slice slice : slices) escapeCount += slice.escapeCount;
+		checkArgument(escapeCount <= MAX_DATA_LENGTH, "Too many outliers");
+		final short[] escapes = new short[(int) escapeCount];
+		int offset = 0;
+		for (int i=0; i<sliceCount; ++i) {
+			final Slice slice = slices[i];
+			System.arraycopy(slice.escapes, 0, escapes, offset, slice.escapeCount);
+			final int to = Math.min(blocks.length, (i+1) << LOG_SLICE_BLOCKS);
+			for (int b=i << LOG_SLICE_BLOCKS; b<to; ++b) blocks[b] += (long) offset << BASE_BITS;
+			offset += slice.escapeCount;
+		}
+		return new CompressedCollatzTable(data, blocks, escapes, 2L * length);
+	}
+
+	/**
+	 * Store the block in the data starting at {@code start}, append its outliers to the slice,
+	 * and return the base combined with the offset of the outliers in the slice.
+	 */
+	private static long compressBlock(int[] block, byte[] data, int start, Slice slice) {
+		final int[] sorted = block.clone();
+		Arrays.sort(sorted);
+		// Find the base covering the most entries.
+		int base = sorted[0];
+		int covered = 0;
+		for (int lo=0, hi=0; lo<sorted.length; ++lo) {
+			while (hi<sorted.length && sorted[hi] - sorted[lo] < FIRST_ESCAPE) ++hi;
+			if (hi-lo <= covered) continue;
+			covered = hi-lo;
+			base = sorted[lo];
+		}
+		assert 0 <= base && base <= BASE_MASK;
+
+		final int outliers = block.length - covered;
+		final int needed = outliers <= RAW - FIRST_ESCAPE ? outliers : block.length;
+		if (slice.escapeCount + needed > slice.escapes.length) {
+			slice.escapes = Arrays.copyOf(slice.escapes, 2 * slice.escapes.length + needed);
+		}
+		final long result = ((long) slice.escapeCount << BASE_BITS) + base;
+		if (outliers > RAW - FIRST_ESCAPE) {
+			for (int j=0; j<block.length; ++j) {
+				data[start + j] = (byte) RAW;
+				slice.escapes[slice.escapeCount++] = (short) block[j];
+			}
+			return result;
+		}
+		for (int j=0, ordinal=FIRST_ESCAPE; j<block.length; ++j) {
+			final int delta = block[j] - base;
+			if (0 <= delta && delta < FIRST_ESCAPE) {
+				data[start + j] = (byte) delta;
+			} else {
+				data[start + j] = (byte) ordinal++;
+				slice.escapes[slice.escapeCount++] = (short) block[j];
+			}
+		}
+		return result;
+	}
+
+	private static int computeDataLength(int logSize) {
+		checkArgument(LOG_BLOCK_LENGTH <= logSize && logSize < 32);
+		return logSize==31 ? MAX_DATA_LENGTH : 1 << logSize;
+	}
+
+	@Override long computeLength(int logSize) {
+		return computeDataLength(logSize);
+	}
+
+	@Override CollatzTable withReadLimit(long readLimit) {
+		return readLimit==readLimit() ? this : new CompressedCollatzTable(data, blocks, escapes, readLimit);
+	}
+
+	@Override int get(long n) {
+		assert hasEntry(n);
+		final int index = (int) (n >>> 1);
+		final int delta = data[index] & 0xFF;
+		final long block = blocks[index >>> LOG_BLOCK_LENGTH];
+		if (delta < FIRST_ESCAPE) return (int) (block & BASE_MASK) + delta;
+		return getEscaped(index, delta, block);
+	}
+
+	private int getEscaped(int index, int delta, long block) {
+		final int offset = (int) (block >>> BASE_BITS);
+		final int ordinal = delta==RAW ? index & ((1 << LOG_BLOCK_LENGTH) - 1) : delta - FIRST_ESCAPE;
+		return escapes[offset + ordinal];
+	}
+
+	@Override void set(long n, int value) {
+		throw new UnsupportedOperationException("Read-only table");
+	}
+
+	@Override void setAll(long index, ByteBuffer source) {
+		throw new UnsupportedOperationException("Read-only table");
+	}
+
+	/** Return the number of bytes used by the arrays. */
+	long memoryUsage() {
+		return data.length + 8L * blocks.length + 2L * escapes.length;
+	}
+
+	private static final int LOG_BLOCK_LENGTH = 6;
+	/** Every slice gets compressed by a single task. */
+	private static final int LOG_SLICE_BLOCKS = 10;
+
+	private static final int FIRST_ESCAPE = 240;
+	private static final int RAW = 255;
+
+	private static final int BASE_BITS = 16;
+	private static final long BASE_MASK = (1L << BASE_BITS) - 1;
+
+	/** The maximum array length rounded down to a multiple of the block length. */
+	private static final int MAX_DATA_LENGTH = (Integer.MAX_VALUE - 8) & -(1 << LOG_BLOCK_LENGTH);
+
+	/** The entries as differences to the base of their block or escapes. */
+	private final byte[] data;
+	/** The bases (in the lowest {@value #BASE_BITS} bits) and the offsets of the outliers in {@link #escapes}. */
+	private final long[] blocks;
+	private final short[] escapes;
+}
@@ -0,0 +1,102 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+/**
+ * The distribution of {@link Collatz#delay}s over a range, i.e., the number of starts for every delay.
+ *
+ * <p>All statistics get derived from the counts, so that a single pass over the range suffices.
+ */
+final class DelayHistogram {
+	private DelayHistogram() {
+		counts = new long[INITIAL_LENGTH];
+	}
+
+	/**
+	 * Return the histogram of the delays of all numbers between {@code min} and {@code max}, using all available cores.
+	 * The {@code collatz} must be usable concurrently.
+	 */
+	static DelayHistogram compute(Collatz collatz, long min, long max) {
+		checkNotNull(collatz);
+		checkArgument(0 < min && min <= max && max < collatz.limit());
+		final long segments = ((max-min) >> LOG_SEGMENT_LENGTH) + 1;
+		// Every task accumulates all its segments into its own counters, which get merged once at the end.
+		return LongStream.range(0, segments).parallel().collect(DelayHistogram::new, (result, segment) -> {
+			final long from = min + (segment << LOG_SEGMENT_LENGTH);
+			final long to = Math.min(max, from + (1L << LOG_SEGMENT_LENGTH) - 1);
+			for (long n=from; n<=to; ++n) result.add(collatz.delay(n));
+		}, DelayHistogram::addAll);
+	}
+
+	private void add(int delay) {
+		if (delay >= counts.length) counts = Arrays.copyOf(counts, Math.max(2 * counts.length, delay + 1));
+		++counts[delay];
+		++total;
+	}
+
+	private void addAll(DelayHistogram other) {
+		if (other.counts.length > counts.length) counts = Arrays.copyOf(counts, other.counts.length);
+		for (int i=0; i<other.counts.length; ++i) counts[i] += other.counts[i];
+		total += other.total;
+	}
+
+	/** Return the number of starts having the given delay. */
+	long count(int delay) {
+		checkArgument(delay >= 0);
+		return delay < counts.length ? counts[delay] : 0;
+	}
+
+	/** Return the number of starts having at least the given delay. */
+	long countAtLeast(int threshold) {
+		long result = 0;
+		for (int i=Math.max(0, threshold); i<counts.length; ++i) result += counts[i];
+		return result;
+	}
+
+	/** Return the number of all starts. */
+	long total() {
+		return total;
+	}
+
+	/** Return the longest delay found. */
+	int maxDelay() {
+		for (int i=counts.length; i-->0; ) {
+			if (counts[i] > 0) return i;
+		}
+		return -1;
+	}
+
+	double mean() {
+		double sum = 0;
+		for (int i=0; i<counts.length; ++i) sum += (double) i * counts[i];
+		return sum / total;
+	}
+
+	/** Return the smallest delay such that at least the given fraction of starts has no longer delay. */
+	int percentile(double fraction) {
+		checkArgument(0 <= fraction && fraction <= 1);
+		final double needed = Math.max(1, Math.ceil(fraction * total));
+		long sum = 0;
+		for (int i=0; i<counts.length; ++i) {
+			sum += counts[i];
+			if (sum >= needed) return i;
+		}
+		return maxDelay();
+	}
+
+	@Override public String toString() {
+		return getClass().getSimpleName() + "-" + total + "-" + maxDelay();
+	}
+
+	private static final int INITIAL_LENGTH = 1024;
+	/** The numbers get processed in segments of this length, each by a single task. */
+	private static final int LOG_SEGMENT_LENGTH = 16;
+
+	/** The number of starts for every delay. */
+	private long[] counts;
+	private long total;
+}
@@ -0,0 +1,127 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Finds the delay records, i.e., the numbers having a longer {@link Collatz#delay} than all smaller numbers,
+ * just like those listed in {@link Records}.
+ *
+ * <p>The numbers get scanned in increasing order and every record gets reported as soon as it's found.
+ * The numbers excluded by the {@link ResidueSieve} can be skipped, as they're dominated by a smaller number with no shorter delay.
+ */
+final class DelayRecordScanner {
+	@Getter @EqualsAndHashCode @ToString @RequiredArgsConstructor static final class DelayRecord {
+		private final long n;
+		private final int delay;
+	}
+
+	/** A scan reporting to the consumer and throwing a {@link CancellationException} as soon as {@code cancelled} returns true. */
+	interface CancellableScan<T> {
+		void run(Consumer<T> consumer, BooleanSupplier cancelled);
+	}
+
+	DelayRecordScanner(JumpingCollatz collatz) {
+		this(collatz, JumpingCollatz.defaultSieve());
+	}
+
+	DelayRecordScanner(JumpingCollatz collatz, ResidueSieve sieve) {
+		this.collatz = checkNotNull(collatz);
+		this.sieve = checkNotNull(sieve);
+	}
+
+	/**
+	 * Report all records between {@code from} and {@code to} to the consumer.
+	 *
+	 * @param previousDelay the delay of the last record below {@code from}, or -1 if {@code from} is 1
+	 */
+	void scan(long from, long to, int previousDelay, Consumer<DelayRecord> consumer) {
+		scan(from, to, previousDelay, consumer, () -> false);
+	}
+
+	/**
+	 * Return a publisher which runs a new {@link #scan} in a new thread for every subscriber.
+	 *
+	 * <p>The records get delivered asynchronously and buffered up to {@link Flow#defaultBufferSize},
+	 * so that a slow subscriber doesn't stall the computation.
+	 * As records are rare, the buffer is practically never full, but if it was, the computation would wait rather than lose records.
+	 * Cancelling the subscription stops the computation.
+	 */
+	Flow.Publisher<DelayRecord> publisher(long from, long to, int previousDelay) {
+		checkArgument(0 < from && from <= to && to < collatz.limit());
+		return publisher("DelayRecordScanner", (consumer, cancelled) -> scan(from, to, previousDelay, consumer, cancelled));
+	}
+
+	/** Return a publisher which runs the scan in a new thread with the given name for every subscriber, as described in {@link #publisher(long, long, int)}. */
+	static <T> Flow.Publisher<T> publisher(String name, CancellableScan<T> scan) {
+		checkNotNull(scan);
+		return subscriber -> {
+			final SubmissionPublisher<T> publisher = new SubmissionPublisher<>();
+			publisher.subscribe(subscriber);
+			final Thread thread = new Thread(() -> {
+				try {
+					scan.run(publisher::submit, () -> !publisher.hasSubscribers());
+					publisher.close();
+				} catch (final CancellationException e) {
+					publisher.close();
+				} catch (final RuntimeException | Error e) {
+					publisher.closeExceptionally(e);
+				}
+			}, name);
+			thread.setDaemon(true);
+			thread.start();
+		};
+	}
+
+	/** Like {@link #scan(long, long, int, Consumer)}, but throw a {@link CancellationException} as soon as {@code cancelled} returns true. */
+	private void scan(long from, long to, int previousDelay, Consumer<DelayRecord> consumer, BooleanSupplier cancelled) {
+		checkArgument(0 < from && from <= to && to < collatz.limit());
+		checkArgument(previousDelay >= 0 || from == 1);
+		checkNotNull(consumer);
+		final int modulus = sieve.modulus();
+		final int[] survivors = sieve.survivors();
+		final long sievedFrom = sieve.sievedMin(from);
+		final long sievedTo = sieve.sievedMax(to);
+		if (sievedFrom >= sievedTo) {
+			scanSimply(from, to, previousDelay, consumer);
+			return;
+		}
+		int longest = scanSimply(from, sievedFrom-1, previousDelay, consumer);
+		for (long base=sievedFrom; base<sievedTo; base+=modulus) {
+			if (cancelled.getAsBoolean()) throw new CancellationException();
+			for (final int r : survivors) {
+				final long n = base + r;
+				final int delay = collatz.delay(n, longest+1);
+				if (delay <= longest) continue;
+				longest = delay;
+				consumer.accept(new DelayRecord(n, delay));
+			}
+		}
+		scanSimply(sievedTo+1, to, longest, consumer);
+	}
+
+	/** Scan all numbers between {@code from} and {@code to} and return the longest delay found or {@code longest}, whichever is longer. */
+	private int scanSimply(long from, long to, int longest, Consumer<DelayRecord> consumer) {
+		for (long n=from; n<=to; ++n) {
+			final int delay = collatz.delay(n, longest+1);
+			if (delay <= longest) continue;
+			longest = delay;
+			consumer.accept(new DelayRecord(n, delay));
+		}
+		return longest;
+	}
+
+	private final JumpingCollatz collatz;
+	private final ResidueSieve sieve;
+}
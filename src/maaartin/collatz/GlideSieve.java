@@ -0,0 +1,247 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import lombok.Getter;
+
+/**
+ * A sieve computing the glide, i.e., the stopping time, which is the number of steps until the trajectory first drops below its start.
+ *
+ * <p>Starting from {@code n = 2**log2 * q + r}, the value reached after {@code i <= log2} steps of the form {@code x -> x/2}
+ * or {@code x -> (3*x+1)/2} is {@code 3**j * 2**(log2-i) * q + c}, where the number of odd steps {@code j} and {@code c}
+ * depend on the residue {@code r} only, just like the entries of the {@link JumpingTable}.
+ * As soon as {@code 3**j < 2**i}, the value is below the start and the glide of {@code n} is known without any iteration.
+ * This holds for all but the few {@link #survivors} and for all starts being at least the {@link #modulus}.
+ *
+ * <p>The glide of a survivor is longer than the glide of every other residue, as it takes more than {@code log2} steps
+ * with more odd steps than any other residue may have made.
+ * Its trajectory gets followed by jumps using the same residues, as long as no value within the jump can drop below the start,
+ * and step by step otherwise.
+ * Values needing more than 64 bits get handled by recomputing the trajectory with {@link MutableLong128}, which is rare.
+ */
+final class GlideSieve {
+	/** The best start found so far by {@link GlideSieve#maximize}. */
+	private static final class State {
+		void update(long n, int glide) {
+			if (glide <= longest) return;
+			result = n;
+			longest = glide;
+		}
+
+		private long result = -1;
+		private int longest = -1;
+	}
+
+	/** Holds the sieve used by the static methods, so that it gets built on their first use only. */
+	private static final class DefaultSieveHolder {
+		static final GlideSieve SIEVE = newSieve(16);
+	}
+
+	private GlideSieve(int log2) {
+		checkArgument(3 <= log2 && log2 <= MAX_LOG2);
+		this.log2 = log2;
+		modulus = 1 << log2;
+		data = new long[4 * modulus];
+		int count = 0;
+		long minQuotient = 0;
+		int longestResolved = 0;
+		for (int r=0; r<modulus; ++r) {
+			long c = r;
+			int oddSteps = 0;
+			int glide = 0;
+			long troughMultiplier = Long.MAX_VALUE;
+			for (int i=1; i<=log2; ++i) {
+				if ((c&1) == 0) {
+					c >>>= 1;
+				} else {
+					c += (c>>>1) + 1;
+					++oddSteps;
+				}
+				final long multiplier = JumpingTable.oddStepsToMultiplier(oddSteps) << (log2-i);
+				troughMultiplier = Math.min(troughMultiplier, multiplier);
+				// The value after i steps minus the start is difference * q + c - r.
+				final long difference = multiplier - modulus;
+				if (glide == 0 && difference < 0) {
+					glide = i + oddSteps;
+					if (c >= r) minQuotient = Math.max(minQuotient, (c-r) / -difference + 1);
+				} else if (glide == 0 && c < r) {
+					minQuotient = Math.max(minQuotient, (r-c + difference - 1) / difference);
+				}
+			}
+			data[4*r+0] = c;
+			data[4*r+1] = oddSteps;
+			data[4*r+2] = troughMultiplier;
+			data[4*r+3] = glide;
+			if (glide == 0) ++count;
+			longestResolved = Math.max(longestResolved, glide);
+		}
+		// This can't happen, as only the residues 0 and 1 need a positive quotient.
+		checkState(minQuotient <= 1);
+		survivors = new int[count];
+		for (int r=0, i=0; r<modulus; ++r) {
+			if (data[4*r+3] == 0) survivors[i++] = r;
+		}
+		assert survivors.length == 0 || glide(modulus + survivors[0]) > longestResolved;
+	}
+
+	/** Return a sieve working modulo 2<sup>log2</sup>. */
+	static GlideSieve newSieve(int log2) {
+		return new GlideSieve(log2);
+	}
+
+	/** Return the {@link #glide} of a start below the {@link JumpingCollatz#limit}, using a sieve working modulo 2<sup>16</sup>. */
+	static int glideOf(long start) {
+		checkArgument(start > 0 && start < JumpingCollatz.LIMIT);
+		return DefaultSieveHolder.SIEVE.glide(start);
+	}
+
+	/** Like {@link #maximize}, but using the same sieve as {@link #glideOf}. */
+	static long maximizeGlide(long min, long max) {
+		checkArgument(0 < min && min <= max && max < JumpingCollatz.LIMIT);
+		return DefaultSieveHolder.SIEVE.maximize(min, max);
+	}
+
+	/**
+	 * Return the glide of the argument, i.e., the number of steps until the trajectory drops below the start.
+	 * By definition, the glide of 1 is 0.
+	 *
+	 * <p>Examples: glide(2) = 1, glide(3) = 6, glide(27) = 96.
+	 *
+	 * @throws ArithmeticException if a value exceeds 127 bits, which doesn't happen below the {@link JumpingCollatz#limit}
+	 */
+	int glide(long start) {
+		return glide(start, Integer.MAX_VALUE);
+	}
+
+	/** Return the {@link #glide} of the argument, if it's at most {@code budget}. Otherwise, a bigger number may be returned. */
+	int glide(long start, int budget) {
+		checkArgument(start > 0);
+		if (start == 1) return 0;
+		final int result = glide64(start, budget);
+		return result >= 0 ? result : glide128(start, budget);
+	}
+
+	/** Return the {@link #glide} of the argument, or -1 if a value doesn't fit in 63 bits. */
+	private int glide64(long start, int budget) {
+		final int mask = modulus - 1;
+		int result = 0;
+		long x = start;
+		if (start >= modulus) {
+			final int r = (int) (start & mask);
+			final int glide = (int) data[4*r+3];
+			if (glide > 0) return glide;
+			// A survivor doesn't drop below the start within the first jump.
+			final int oddSteps = (int) data[4*r+1];
+			final long shifted = start >>> log2;
+			final long multiplier = JumpingTable.oddStepsToMultiplier(oddSteps);
+			if (Math.multiplyHigh(shifted, multiplier) != 0) return -1;
+			x = shifted * multiplier + data[4*r+0];
+			if (x < 0) return -1;
+			result = log2 + oddSteps;
+		}
+		while (result <= budget) {
+			final int r = (int) (x & mask);
+			final long shifted = x >>> log2;
+			final long trough = shifted * data[4*r+2];
+			// All values reached within the jump are at least the trough.
+			if (Math.multiplyHigh(shifted, data[4*r+2]) != 0 || trough < 0 || trough >= start) {
+				final int oddSteps = (int) data[4*r+1];
+				final long multiplier = JumpingTable.oddStepsToMultiplier(oddSteps);
+				if (Math.multiplyHigh(shifted, multiplier) != 0) return -1;
+				x = shifted * multiplier + data[4*r+0];
+				if (x < 0) return -1;
+				result += log2 + oddSteps;
+				continue;
+			}
+			for (int i=0; i<log2; ++i) {
+				if ((x&1) == 0) {
+					x >>>= 1;
+					++result;
+					if (x < start) return result;
+				} else {
+					x += (x>>>1) + 1;
+					if (x < 0) return -1;
+					result += 2;
+				}
+			}
+		}
+		return result;
+	}
+
+	/** Like {@link #glide64}, but working with 128 bits. */
+	private int glide128(long start, int budget) {
+		final int mask = modulus - 1;
+		final MutableLong128 limit = new MutableLong128(start);
+		final MutableLong128 x = new MutableLong128(start);
+		final MutableLong128 trough = new MutableLong128();
+		int result = 0;
+		while (result <= budget) {
+			final int r = (int) (x.low() & mask);
+			trough.setTo(x.low(), x.high());
+			if (!trough.tryJump(log2, data[4*r+2], 0) || trough.compareTo(limit) >= 0) {
+				final int oddSteps = (int) data[4*r+1];
+				x.jump(log2, JumpingTable.oddStepsToMultiplier(oddSteps), data[4*r+0]);
+				result += log2 + oddSteps;
+				continue;
+			}
+			for (int i=0; i<log2; ++i) {
+				if ((x.low()&1) == 0) {
+					x.shiftRight(1);
+					++result;
+					if (x.compareTo(limit) < 0) return result;
+				} else {
+					x.jump(0, 3, 1);
+					x.shiftRight(1);
+					result += 2;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the number between {@code min} and {@code max} maximizing the {@link #glide}, preferring the smaller one in case of ties.
+	 *
+	 * <p>Within every complete block of {@link #modulus} numbers, only the {@link #survivors} need to be evaluated.
+	 */
+	long maximize(long min, long max) {
+		checkArgument(0 < min && min <= max);
+		final State state = new State();
+		final long sievedFrom = ResidueSieve.sievedMin(min, modulus);
+		final long sievedTo = ResidueSieve.sievedMax(max, modulus);
+		if (sievedFrom >= sievedTo) return maximizeSimply(state, min, max);
+		maximizeSimply(state, min, sievedFrom-1);
+		for (long base=sievedFrom; base<sievedTo; base+=modulus) {
+			for (final int r : survivors) {
+				final long n = base + r;
+				state.update(n, glide(n));
+			}
+		}
+		return maximizeSimply(state, sievedTo+1, max);
+	}
+
+	private long maximizeSimply(State state, long min, long max) {
+		for (long n=min; n<=max; ++n) state.update(n, glide(n));
+		return state.result;
+	}
+
+	/** Return the fraction of starts which need to be evaluated. */
+	double survivingFraction() {
+		return (double) survivors.length / modulus;
+	}
+
+	@Override public String toString() {
+		return getClass().getSimpleName() + "-" + log2;
+	}
+
+	static final int MAX_LOG2 = 20;
+
+	@Getter private final int log2;
+	/** The period of the sieve, i.e., 2<sup>log2</sup>. */
+	@Getter private final int modulus;
+	/** The residues modulo {@link #modulus} whose glide isn't determined by the residue, in increasing order. Must not be modified. */
+	@Getter private final int[] survivors;
+	/** The addend, the number of odd steps, the multiplier bounding the values reached, and the glide or zero for every residue. */
+	private final long[] data;
+}
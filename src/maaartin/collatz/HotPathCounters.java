@@ -0,0 +1,130 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.Consumer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Counters telling where the time in {@link JumpingCollatz} goes, enabled by the system property {@value #PROPERTY}.
+ *
+ * <p>As {@link #ENABLED} is a static final constant, the JIT removes all counting when disabled,
+ * so that the hot paths compile to the same machine code as without the counters.
+ * When enabled, every part of a maximize call processed by a single thread gets its own instance, which needs no synchronization.
+ * The instances get merged like the results and at the end of the call, their sum gets passed to the {@link #reporter},
+ * so that concurrent calls get reported separately.
+ */
+final class HotPathCounters {
+	/** The values of the counters accumulated between two reports. */
+	@Getter @RequiredArgsConstructor static final class Snapshot {
+		double jumpsPerStart() {
+			return (double) jumps / Math.max(1, starts);
+		}
+
+		/** Return the number of lookups of odd numbers between {@code 2**(bits-1)} and {@code 2**bits - 1}. */
+		long lookups(int bits) {
+			return regions[bits];
+		}
+
+		@Override public String toString() {
+			final StringBuilder result = new StringBuilder(getClass().getSimpleName())
+					.append("(starts=").append(starts)
+					.append(", jumps=").append(jumps)
+					.append(", hopeless=").append(hopeless)
+					.append(", wide=").append(wide)
+					.append(", lookups=").append(lookups)
+					.append(", regions={");
+			String sep = "";
+			for (int i=0; i<regions.length; ++i) {
+				if (regions[i] == 0) continue;
+				result.append(sep).append(i).append(": ").append(regions[i]);
+				sep = ", ";
+			}
+			return result.append("})").toString();
+		}
+
+		/** The number of trajectories followed. */
+		private final long starts;
+		private final long jumps;
+		/** The number of trajectories abandoned, as they can't reach the needed delay according to the {@link Records}. */
+		private final long hopeless;
+		/** The number of trajectories needing 128 bits. */
+		private final long wide;
+		/** The number of lookups in the {@link CollatzTable}. */
+		private final long lookups;
+		/** The number of lookups by the bit length of the odd number looked up. */
+		@Getter(AccessLevel.NONE) private final long[] regions;
+	}
+
+	private HotPathCounters() {
+		regions = ENABLED ? new long[65] : null;
+	}
+
+	/** Return new counters, which must not be shared by threads, or a shared dummy if disabled. */
+	static HotPathCounters newCounters() {
+		return ENABLED ? new HotPathCounters() : DISABLED;
+	}
+
+	void countStart() {
+		if (ENABLED) ++starts;
+	}
+
+	void countJump() {
+		if (ENABLED) ++jumps;
+	}
+
+	void countHopeless() {
+		if (ENABLED) ++hopeless;
+	}
+
+	void countWide() {
+		if (ENABLED) ++wide;
+	}
+
+	void countLookup(long odd) {
+		if (!ENABLED) return;
+		++lookups;
+		++regions[64 - Long.numberOfLeadingZeros(odd)];
+	}
+
+	/** Add the counts of {@code other}, which must not be used anymore. */
+	void merge(HotPathCounters other) {
+		if (!ENABLED) return;
+		starts += other.starts;
+		jumps += other.jumps;
+		hopeless += other.hopeless;
+		wide += other.wide;
+		lookups += other.lookups;
+		for (int i=0; i<regions.length; ++i) regions[i] += other.regions[i];
+	}
+
+	/** Pass the counts to the {@link #reporter}, if enabled, and return the {@code result} of the maximize call they belong to. */
+	long reported(long result) {
+		if (ENABLED) reporter.accept(new Snapshot(starts, jumps, hopeless, wide, lookups, regions.clone()));
+		return result;
+	}
+
+	/** Set the consumer of the counters reported, which defaults to printing them to {@link System#err}. */
+	static void setReporter(Consumer<Snapshot> reporter) {
+		HotPathCounters.reporter = checkNotNull(reporter);
+	}
+
+	static final String PROPERTY = "maaartin.collatz.counters";
+	static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+	/** Never counting anything, so that it can be shared. */
+	private static final HotPathCounters DISABLED = new HotPathCounters();
+
+	private static volatile Consumer<Snapshot> reporter = System.err::println;
+
+	private long starts;
+	private long jumps;
+	private long hopeless;
+	private long wide;
+	private long lookups;
+	/** The lookups by the bit length of the odd number looked up, or null if disabled. */
+	private final long[] regions;
+}
@@ -0,0 +1,95 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import lombok.Getter;
+
+/**
+ * The peaks of the jumps of a {@link JumpingTable}, which are needed only by {@link TrajectoryStatistics} and {@link PathRecordScanner}.
+ * They get computed on the first call to {@link JumpingTable#peaks}, so that nobody else pays for them.
+ *
+ * <p>Every value reached when jumping from {@code x} is of the form {@code (x >>> evenSteps) * m + a},
+ * where {@code m} and {@code a} depend on the index only.
+ * As the halving steps never produce a new peak, only the start and the values {@code 3*x+1} get considered.
+ * When {@code x >>> evenSteps} is at least the {@link #peakThreshold}, the value with the biggest multiplier wins,
+ * so {@code (x >>> evenSteps) * peakMultiplier + peakAddend} is the peak of the jump.
+ * Otherwise, {@code (x >>> evenSteps) * peakMultiplier + maxAddend} bounds it.
+ */
+final class JumpPeaks {
+	private JumpPeaks(int evenSteps) {
+		checkArgument(2 <= evenSteps && evenSteps <= MAX_EVEN_STEPS, "Peaks are unsupported for evenSteps %s", evenSteps);
+		this.evenSteps = evenSteps;
+		data = new long[4 << evenSteps];
+		final long[] multipliers = new long[evenSteps + 1];
+		final long[] addends = new long[evenSteps + 1];
+		for (int index=0; index < 1<<evenSteps; ++index) {
+			long multiplier = 1L << evenSteps;
+			long addend = index;
+			int count = 0;
+			multipliers[count] = multiplier;
+			addends[count++] = addend;
+			for (int i=0; i<evenSteps; ++i) {
+				if ((addend&1) != 0) {
+					multiplier *= 3;
+					addend = 3*addend + 1;
+					multipliers[count] = multiplier;
+					addends[count++] = addend;
+				}
+				multiplier >>>= 1;
+				addend >>>= 1;
+			}
+			long peakMultiplier = 0;
+			long peakAddend = 0;
+			long maxAddend = 0;
+			for (int i=0; i<count; ++i) {
+				if (multipliers[i] > peakMultiplier || multipliers[i] == peakMultiplier && addends[i] > peakAddend) {
+					peakMultiplier = multipliers[i];
+					peakAddend = addends[i];
+				}
+				maxAddend = Math.max(maxAddend, addends[i]);
+			}
+			// The value with the peak multiplier wins as soon as it overtakes all values having a bigger addend.
+			long peakThreshold = 0;
+			for (int i=0; i<count; ++i) {
+				if (addends[i] <= peakAddend) continue;
+				final long difference = peakMultiplier - multipliers[i];
+				peakThreshold = Math.max(peakThreshold, (addends[i] - peakAddend + difference - 1) / difference);
+			}
+			data[4*index+0] = peakMultiplier;
+			data[4*index+1] = peakAddend;
+			data[4*index+2] = maxAddend;
+			data[4*index+3] = peakThreshold;
+		}
+	}
+
+	static JumpPeaks newPeaks(int evenSteps) {
+		return new JumpPeaks(evenSteps);
+	}
+
+	/** Return the biggest multiplier of all values reached within the jump. */
+	long peakMultiplier(int index) {
+		return data[4*index+0];
+	}
+
+	/** Return the biggest addend of all values reached within the jump having the {@link #peakMultiplier}. */
+	long peakAddend(int index) {
+		return data[4*index+1];
+	}
+
+	/** Return the biggest addend of all values reached within the jump, which is the peak when jumping from the index itself. */
+	long maxAddend(int index) {
+		return data[4*index+2];
+	}
+
+	/** Return the least {@code x >>> evenSteps} for which the {@link #peakMultiplier} and the {@link #peakAddend} give the peak. */
+	long peakThreshold(int index) {
+		return data[4*index+3];
+	}
+
+	/** Beyond this, the four longs per index don't fit in an array. */
+	static final int MAX_EVEN_STEPS = 28;
+
+	@Getter private final int evenSteps;
+	/** The {@link #peakMultiplier}, the {@link #peakAddend}, the {@link #maxAddend}, and the {@link #peakThreshold} for every index. */
+	private final long[] data;
+}
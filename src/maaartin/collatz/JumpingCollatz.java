@@ -1,79 +1,481 @@
 package maaartin.collatz;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class JumpingCollatz extends Collatz {
-	private static final class State {
+	/**
+	 * The best start found so far by a maximize call or a part of it.
+	 * The {@link WideCollatz} uses it with the offsets from the start of its range in place of the starts.
+	 */
+	static final class State {
+		State() {
+			this(null);
+		}
+
+		/**
+		 * @param shared the longest delay found by any worker, used for pruning only,
+		 * as the ties get resolved when merging the states
+		 */
+		State(AtomicInteger shared) {
+			this.shared = shared;
+		}
+
 		void update(long n, int delay) {
 			if (delay<longest) return;
 			if (delay==longest && n >= result) return;
 			result = n;
 			longest = delay;
+			if (shared!=null) publish(delay);
+		}
+
+		/** Update the state, if the {@code delay} of {@code n} reaches the {@code threshold}, and count the evaluation if enabled. */
+		void evaluated(long n, int delay, int threshold) {
+			if (delay >= threshold) {
+				fingerprint = (fingerprint + n) * FINGERPRINT_MULTIPLIER + delay;
+				update(n, delay);
+			}
+			if (!HotPathCounters.ENABLED) return;
+			++evaluated;
+			if (delay == 0 && delay < threshold) ++pruned;
+		}
+
+		void merge(State other) {
+			if (other.result >= 0) update(other.result, other.longest);
+			evaluated += other.evaluated;
+			pruned += other.pruned;
+			counters.merge(other.counters);
+		}
+
+		/** Report the {@link #counters} of the whole maximize call and return its result. */
+		long reportedResult() {
+			return counters.reported(result);
+		}
+
+		/** Return the least delay a number must have in order to possibly become the result. */
+		int threshold() {
+			return shared==null ? longest : Math.max(longest, shared.get());
+		}
+
+		private void publish(int delay) {
+			while (true) {
+				final int old = shared.get();
+				if (old >= delay || shared.compareAndSet(old, delay)) return;
+			}
 		}
 
+		private static final long FINGERPRINT_MULTIPLIER = 0x9E37_79B9_7F4A_7C15L;
+
 		long result = -1;
 		int longest = -1;
+		/**
+		 * A fold of all starts and their delays reaching the threshold, in the order of their evaluation, but not of the merged states.
+		 * As such delays are exact, it doesn't depend on the tables used and it allows to compare parts computed by different workers.
+		 */
+		long fingerprint;
+		/** The number of starts evaluated, counted only if the {@link HotPathCounters} are enabled. */
+		long evaluated;
+		/** The number of starts abandoned before their delay got known, counted only if the {@link HotPathCounters} are enabled. */
+		long pruned;
+		final HotPathCounters counters = HotPathCounters.newCounters();
+		private final AtomicInteger shared;
+	}
+
+	/**
+	 * Processes the part of the range between {@code from} and {@code to} which get aligned to multiples of the {@link #alignment}.
+	 * In the smart mode, the {@link ResidueSieve} gets used, otherwise the stepping of {@link JumpingCollatz#maximizeNarrowly}.
+	 */
+	@SuppressWarnings("serial") private final class MaximizeTask extends RecursiveTask<State> {
+		MaximizeTask(AtomicInteger shared, boolean smart, long min, long max, long from, long to) {
+			this.shared = shared;
+			this.smart = smart;
+			this.min = min;
+			this.max = max;
+			this.from = from;
+			this.to = to;
+			alignment = smart ? sieve().modulus() : 9;
+			assert from%alignment == 0 && (to+1)%alignment == 0;
+		}
+
+		@Override protected State compute() {
+			if (to-from < SEGMENT_LENGTH || to-from+1 < 2*alignment) {
+				final State state = new State(shared);
+				final CollatzEvents.MaximizeSegment event = new CollatzEvents.MaximizeSegment();
+				event.begin();
+				if (smart) {
+					maximizeSieved(state, from, to);
+				} else {
+					maximizeNarrowly(state, min, max, from, to);
+				}
+				commit(event, from, to, state);
+				return state;
+			}
+			final long middle = from + (to-from+1) / (2*alignment) * alignment;
+			final MaximizeTask lower = new MaximizeTask(shared, smart, min, max, from, middle-1);
+			lower.fork();
+			// Doing the upper part first just like in maximizeSieved.
+			final State result = new MaximizeTask(shared, smart, min, max, middle, to).compute();
+			result.merge(lower.join());
+			return result;
+		}
+
+		private final AtomicInteger shared;
+		private final boolean smart;
+		private final long min;
+		private final long max;
+		private final long from;
+		private final long to;
+		private final long alignment;
+	}
+
+	/** Like {@link JumpingCollatz}, but filling the {@link CollatzTable} lazily, see {@link JumpingCollatz#memoizing()}. */
+	private static final class MemoizingJumpingCollatz extends JumpingCollatz {
+		MemoizingJumpingCollatz(JumpingTable jumpingTable, CollatzTable collatzTable, ResidueSieve sieve) {
+			super(jumpingTable, collatzTable, sieve);
+		}
+
+		/**
+		 * Uses the entries of the {@link CollatzTable} up to its writeLimit,
+		 * and stores the delay of the first odd value missing there.
+		 */
+		@Override int delayInternal64(long x, int leastInteresting, HotPathCounters counters) {
+			final JumpingTable jumpingTable = super.jumpingTable;
+			final CollatzTable collatzTable = super.collatzTable;
+			int result = 0;
+			final int mask = jumpingTable.mask();
+			final int evenSteps = jumpingTable.evenSteps();
+			final long readLimit = collatzTable.readLimit();
+			final long writeLimit = collatzTable.writeLimit();
+			long missing = 0;
+			int stepsToMissing = 0;
+			while (true) {
+				if (x>0 && x<writeLimit) {
+					final int ntz = Long.numberOfTrailingZeros(x);
+					final long odd = x >>> ntz;
+					final int stored = odd<readLimit ? collatzTable.get(odd) : collatzTable.getLazily(odd);
+					counters.countLookup(odd);
+					if (stored >= 0) {
+						result += ntz + stored;
+						break;
+					}
+					if (missing == 0) {
+						missing = odd;
+						stepsToMissing = result + ntz;
+					}
+				}
+				if (PruningBounds.isHopeless(x, leastInteresting - result, counters)) return 0;
+				final int discriminant = (int) (x & mask);
+				final int oddSteps = jumpingTable.oddSteps(discriminant);
+				x = jumpingTable.addend(discriminant) + ((x >>> evenSteps) * JumpingTable.oddStepsToMultiplier(oddSteps));
+				result += oddSteps + evenSteps;
+				counters.countJump();
+			}
+			if (missing != 0) collatzTable.setLazily(missing, result - stepsToMissing);
+			return result;
+		}
+	}
+
+	/** Holds the sieve used unless another one gets given, so that it gets built on the first maximize call only. */
+	private static final class DefaultSieveHolder {
+		static final ResidueSieve SIEVE = ResidueSieve.newSieve(16, 2);
 	}
 
 	JumpingCollatz(JumpingTable jumpingTable, CollatzTable collatzTable) {
+		this(jumpingTable, collatzTable, null);
+	}
+
+	/** @param sieve the sieve used by {@link #maximize}, or null for the {@link #defaultSieve()} */
+	JumpingCollatz(JumpingTable jumpingTable, CollatzTable collatzTable, ResidueSieve sieve) {
 		checkArgument(collatzTable.readLimit() >= 1L << jumpingTable.evenSteps());
 		this.jumpingTable = jumpingTable;
 		this.collatzTable = collatzTable;
+		this.sieve = sieve;
+	}
+
+	/** Skipping about 87% of the numbers, shared by all users of a sieve working modulo 2<sup>16</sup> * 3<sup>2</sup>. */
+	static ResidueSieve defaultSieve() {
+		return DefaultSieveHolder.SIEVE;
+	}
+
+	/** Return the sieve used by {@link #maximize}. */
+	ResidueSieve sieve() {
+		return sieve!=null ? sieve : DefaultSieveHolder.SIEVE;
+	}
+
+	/**
+	 * Return an instance sharing the tables with {@code this}, but filling the {@link CollatzTable} lazily.
+	 *
+	 * <p>Whenever a trajectory visits an odd value between the {@link CollatzTable#readLimit} and the {@link CollatzTable#writeLimit},
+	 * its entry gets looked up, and if it's unset, its delay gets stored once known.
+	 * So repeated queries get faster without initializing the whole table upfront.
+	 * The instance can be used concurrently, see {@link CollatzTable#setLazily}.
+	 */
+	JumpingCollatz memoizing() {
+		return new MemoizingJumpingCollatz(jumpingTable, collatzTable, sieve);
 	}
 
 	@Override public long limit() {
-		return 1_980976_057694_848447L + 1;
+		return LIMIT;
 	}
 
 	@Override public int delay(long start) {
 		checkArgument(start > 0 && start < limit());
-		return delayInternal(start, -1);
+		return delayInternal(start, -1, HotPathCounters.newCounters());
+	}
+
+	/** Return the {@link #delay} of the argument, if it's at least {@code threshold}. Otherwise, a smaller number may be returned. */
+	int delay(long start, int threshold) {
+		checkArgument(start > 0 && start < limit());
+		return delayInternal(start, threshold, HotPathCounters.newCounters());
+	}
+
+	/** Return the delay, the number of odd steps, and the peak of the trajectory starting at {@code start}. */
+	TrajectoryStatistics statistics(long start) {
+		checkArgument(start > 0 && start < limit());
+		return TrajectoryStatistics.compute(jumpingTable, collatzTable, start);
 	}
 
 	@Override public long maximize(long min, long max) {
 		checkArgument(0 < min && min <= max && max < limit());
 		if (min <= max>>1) return maximize(max);
 		final State state = new State();
+		final CollatzEvents.MaximizeSegment event = new CollatzEvents.MaximizeSegment();
+		event.begin();
 		final long roundedMin = min/9 * 9 + 9;
 		final long roundedMax = max/9 * 9 - 1;
-		if (roundedMin >= roundedMax) return maximizeSimply(state, min, max);
+		if (roundedMin >= roundedMax) {
+			maximizeSimply(state, min, max);
+		} else {
+			maximizeNarrowly(state, min, max, roundedMin, roundedMax);
+			maximizeSimply(state, min, Math.min(max, roundedMin-1));
+			maximizeSimply(state, roundedMax+1, max);
+		}
+		commit(event, min, max, state);
+		return state.reportedResult();
+	}
 
-		for (long i=roundedMin; i<=roundedMax; i+=3) {
-			// Numbers of the form 3*z + 2 can be skipped as they get produced in two steps from
-			// numbers of the form 2*z + 1, respectively.
-			// Let's see if 2*z + 1 or 4*z + 2 is in range.
-			final boolean inRange = 2*i >= 3*min | 4*i <= 3*max - 8;
-			update(state, i+0);
-			update(state, i+1);
-			if (!inRange) update(state, i+2);
+	/**
+	 * Return the same result as {@link #maximize(long, long)}, but use all threads of the {@link ForkJoinPool#commonPool}.
+	 */
+	long maximizeInParallel(long min, long max) {
+		return maximizeInParallel(min, max, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Return the same result as {@link #maximize(long, long)}, but use all threads of the given pool.
+	 *
+	 * <p>Every worker keeps its own {@link State}, only the longest delay gets shared for pruning.
+	 */
+	long maximizeInParallel(long min, long max, ForkJoinPool pool) {
+		checkArgument(0 < min && min <= max && max < limit());
+		checkNotNull(pool);
+		final State state = new State(new AtomicInteger(-1));
+		if (min <= max>>1) {
+			min = max >> 1;
+			final long sievedMin = sieve().sievedMin(min);
+			final long sievedMax = sieve().sievedMax(max);
+			if (sievedMin >= sievedMax) return maximize(max);
+			state.merge(pool.invoke(new MaximizeTask(state.shared, true, min, max, sievedMin, sievedMax)));
+			maximizeSegment(state, true, min, sievedMin-1);
+			maximizeSegment(state, true, sievedMax+1, max);
+			return state.reportedResult();
 		}
+		final long roundedMin = min/9 * 9 + 9;
+		final long roundedMax = max/9 * 9 - 1;
+		if (roundedMin >= roundedMax) {
+			maximizeSegment(state, false, min, max);
+			return state.reportedResult();
+		}
+		state.merge(pool.invoke(new MaximizeTask(state.shared, false, min, max, roundedMin, roundedMax)));
+		maximizeSegment(state, false, min, Math.min(max, roundedMin-1));
+		maximizeSegment(state, false, roundedMax+1, max);
+		return state.reportedResult();
+	}
 
-		maximizeSimply(state, min, Math.min(max, roundedMin-1));
-		maximizeSimply(state, roundedMax+1, max);
-		return state.result;
+	/**
+	 * Process the numbers between {@code from} and {@code to} left over by the {@link MaximizeTask}s in the calling thread,
+	 * as a segment of its own merged into the {@code state}.
+	 * In the smart mode, they must be a part of the range between {@code max/2} and the maximum.
+	 */
+	private void maximizeSegment(State state, boolean smart, long from, long to) {
+		if (from > to) return;
+		final State segment = new State(state.shared);
+		final CollatzEvents.MaximizeSegment event = new CollatzEvents.MaximizeSegment();
+		event.begin();
+		if (smart) {
+			maximizeSmartly(segment, from, to);
+		} else {
+			maximizeSimply(segment, from, to);
+		}
+		commit(event, from, to, segment);
+		state.merge(segment);
+	}
+
+	/**
+	 * Return the number between {@code from} and {@code to} which would be the result of {@link #maximize(long, long)},
+	 * if the range got restricted to them, but skipping the numbers dominated by others in the whole range.
+	 * Return -1 if all of them get skipped.
+	 *
+	 * <p>Merging the results for all parts of the range with ties resolved in favor of the smaller number gives the result of maximize.
+	 * The parts must lie between {@link #effectiveMin} and {@code max}.
+	 */
+	long maximizePart(long min, long max, long from, long to) {
+		return maximizePartState(min, max, from, to).reportedResult();
+	}
+
+	/**
+	 * Like {@link #maximizePart}, but return the whole {@link State}, whose {@link State#fingerprint} identifies the work done.
+	 * The caller gets the result and reports the counters via {@link State#reportedResult}.
+	 */
+	State maximizePartState(long min, long max, long from, long to) {
+		checkArgument(0 < min && min <= max && max < limit());
+		checkArgument(effectiveMin(min, max) <= from && from <= to && to <= max);
+		final State state = new State();
+		final CollatzEvents.MaximizeSegment event = new CollatzEvents.MaximizeSegment();
+		event.begin();
+		if (min <= max>>1) {
+			final long sievedMin = sieve().sievedMin(from);
+			final long sievedMax = sieve().sievedMax(to);
+			if (sievedMin < sievedMax) {
+				maximizeSieved(state, sievedMin, sievedMax);
+				maximizeSmartly(state, from, sievedMin-1);
+				maximizeSmartly(state, sievedMax+1, to);
+			} else {
+				maximizeSmartly(state, from, to);
+			}
+			commit(event, from, to, state);
+			return state;
+		}
+		// Rounding up even a multiple of 9, as maximizeNarrowly relies on n-1 being in range, see update.
+		final long roundedFrom = from/9 * 9 + 9;
+		final long roundedTo = (to+1)/9 * 9 - 1;
+		if (roundedFrom >= roundedTo) {
+			maximizeSimply(state, from, to);
+		} else {
+			maximizeNarrowly(state, min, max, roundedFrom, roundedTo);
+			maximizeSimply(state, from, roundedFrom-1);
+			maximizeSimply(state, roundedTo+1, to);
+		}
+		commit(event, from, to, state);
+		return state;
+	}
+
+	/** Return the smallest number which may be the result of {@link #maximize(long, long)}, as smaller numbers are always dominated. */
+	static long effectiveMin(long min, long max) {
+		return Math.max(min, max>>1);
+	}
+
+	/**
+	 * Return the same result as {@link #maximize(long, long)}, but follow {@value #LANES} trajectories in lockstep,
+	 * so that the memory accesses of different trajectories may overlap.
+	 */
+	long maximizeInterleaved(long min, long max) {
+		checkArgument(0 < min && min <= max && max < limit());
+		if (min <= max>>1) return maximize(max, true);
+		return maximize(min, max);
 	}
 
 	private long maximize(long max) {
+		return maximize(max, false);
+	}
+
+	private long maximize(long max, boolean interleaved) {
 		final long min = (max >> 1);
 		final State state = new State();
+		final CollatzEvents.MaximizeSegment event = new CollatzEvents.MaximizeSegment();
+		event.begin();
 		final long roundedMin = min/9 * 9 + 9;
 		final long roundedMax = max/9 * 9 - 1;
-		if (roundedMin >= roundedMax) return maximizeSimply(state, 1, max);
+		if (roundedMin >= roundedMax) {
+			maximizeSimply(state, 1, max);
+			commit(event, 1, max, state);
+			return state.reportedResult();
+		}
 		// The order is unimportant even in case of ties as it gets handled in State#update.
 		// Doing the significant part first seems to be more performant.
+		final long sievedMin = sieve().sievedMin(min);
+		final long sievedMax = sieve().sievedMax(max);
+		if (sievedMin < sievedMax) {
+			if (interleaved) {
+				maximizeInterleaved(state, sievedMin, sievedMax);
+			} else {
+				maximizeSieved(state, sievedMin, sievedMax);
+			}
+			maximizeSmartly(state, min, sievedMin-1);
+			maximizeSmartly(state, sievedMax+1, max);
+		} else {
+			maximizeSmartly(state, min, max);
+		}
+		commit(event, min, max, state);
+		return state.reportedResult();
+	}
+
+	/** Commit the event for the segment between {@code from} and {@code to}, whose starts got evaluated into the {@code state}. */
+	private static void commit(CollatzEvents.MaximizeSegment event, long from, long to, State state) {
+		if (!event.shouldCommit()) return;
+		event.from = from;
+		event.to = to;
+		event.bestN = state.result;
+		event.bestDelay = state.longest;
+		event.evaluated = state.evaluated;
+		event.pruned = state.pruned;
+		event.commit();
+	}
+
+	/** Process the numbers between {@code min} and {@code max} being a part of the range between {@code max/2} and the maximum. */
+	private void maximizeSmartly(State state, long min, long max) {
+		final long roundedMin = min/9 * 9 + 9;
+		final long roundedMax = max/9 * 9 - 1;
+		if (roundedMin >= roundedMax) {
+			maximizeSimply(state, min, max);
+			return;
+		}
 		maximizeSmart(state, roundedMin, roundedMax);
 		maximizeSimply(state, min, Math.min(max, roundedMin-1));
 		maximizeSimply(state, roundedMax+1, max);
-		return state.result;
 	}
 
-	private long maximizeSimply(State state, long min, long max) {
+	/**
+	 * Process the numbers between {@code from} and {@code to} being a part of the range between {@code max/2} and the maximum,
+	 * skipping all numbers excluded by the {@link ResidueSieve}.
+	 */
+	private void maximizeSieved(State state, long from, long to) {
+		final int modulus = sieve().modulus();
+		final int[] survivors = sieve().survivors();
+		assert from%modulus == 0 && (to+1)%modulus == 0 && from >= modulus;
+		for (long base=to+1-modulus; base>=from; base-=modulus) {
+			for (final int r : survivors) {
+				final long n = base + r;
+				final int threshold = state.threshold();
+				state.evaluated(n, delayInternal(n, threshold, state.counters), threshold);
+			}
+		}
+	}
+
+	private void maximizeSimply(State state, long min, long max) {
 		assert 1 <= min;
 		for (long i=min; i<=max; ++i) {
-			final int delay = delayInternal(i, state.longest);
-			if (delay >= state.longest) state.update(i, delay);
+			final int threshold = state.threshold();
+			state.evaluated(i, delayInternal(i, threshold, state.counters), threshold);
+		}
+	}
+
+	/** Process the numbers between {@code from} and {@code to} being a part of the range between {@code min} and {@code max}. */
+	private void maximizeNarrowly(State state, long min, long max, long from, long to) {
+		assert from%9 == 0 && to%9 == 8;
+		for (long i=from; i<=to; i+=3) {
+			// Numbers of the form 3*z + 2 can be skipped as they get produced in two steps from
+			// numbers of the form 2*z + 1, respectively.
+			// Let's see if 2*z + 1 or 4*z + 2 is in range.
+			final boolean inRange = 2*i >= 3*min | 4*i <= 3*max - 8;
+			update(state, i+0);
+			update(state, i+1);
+			if (!inRange) update(state, i+2);
 		}
-		return state.result;
 	}
 
 	private void maximizeSmart(State state, long min, long max) {
@@ -92,76 +494,159 @@ class JumpingCollatz extends Collatz {
 		}
 	}
 
-	private void update(State state, long n0) {
-		final int delay0 = delayOrZero(state, n0);
-		if (delay0 >= state.longest) state.update(n0, delay0);
+	/**
+	 * Like {@link #maximizeSieved}, but following {@value #LANES} trajectories in lockstep.
+	 * A lane gets retired as soon as its trajectory lands in the {@link CollatzTable} and gets refilled with the next start.
+	 */
+	private void maximizeInterleaved(State state, long from, long to) {
+		final int modulus = sieve().modulus();
+		final int[] survivors = sieve().survivors();
+		assert from%modulus == 0 && (to+1)%modulus == 0 && from >= modulus;
+		final int mask = jumpingTable.mask();
+		final int evenSteps = jumpingTable.evenSteps();
+		final long limit = collatzTable.readLimit();
+		final HotPathCounters counters = state.counters;
+
+		// The state of the lanes, with a zero start meaning an empty lane.
+		final long[] starts = new long[LANES];
+		final long[] values = new long[LANES];
+		final int[] delays = new int[LANES];
+
+		long base = to+1-modulus;
+		int index = 0;
+		int active = 0;
+		do {
+			final int threshold = state.threshold();
+			for (int lane=0; lane<LANES; ++lane) {
+				if (starts[lane] == 0) {
+					if (base < from) continue;
+					final long n = base + survivors[index];
+					if (++index == survivors.length) {
+						index = 0;
+						base -= modulus;
+					}
+					starts[lane] = n;
+					values[lane] = n;
+					delays[lane] = 0;
+					++active;
+					counters.countStart();
+				}
+
+				final long x = values[lane];
+				final int delay = delays[lane];
+				if (x>=limit || x<0) { // treat as unsigned
+					final boolean pruned = PruningBounds.isHopeless(x, threshold - delay, counters);
+					final int discriminant = (int) (x & mask);
+					final int oddSteps = jumpingTable.oddSteps(discriminant);
+					final long shifted = x >>> evenSteps;
+					final long multiplier = JumpingTable.oddStepsToMultiplier(oddSteps);
+					final long product = shifted * multiplier;
+					final long next = product + jumpingTable.addend(discriminant);
+					if (!pruned && Math.multiplyHigh(shifted, multiplier) == 0 && Long.compareUnsigned(next, product) >= 0) {
+						values[lane] = next;
+						delays[lane] = delay + oddSteps + evenSteps;
+						counters.countJump();
+						continue;
+					}
+					// Either uninteresting or needing more than 64 bits, in which case the trajectory gets recomputed.
+					state.evaluated(starts[lane], pruned ? 0 : delayInternal128(starts[lane], threshold, counters), threshold);
+				} else {
+					state.evaluated(starts[lane], tableDelay(x, delay, counters), threshold);
+				}
+				starts[lane] = 0;
+				--active;
+			}
+		} while (active > 0 || base >= from);
 	}
 
-	private int delayOrZero(State state, long n0) {
+	private void update(State state, long n0) {
 		// http://www.cecm.sfu.ca/organics/papers/lagarias/paper/html/node7.html#SECTION00025000000000000000
 		// For example the trajectories of 8k + 4 and 8k + 5 coalesce after 3 steps...
 		// 8*z + 5 -> 24*z + 16 -> 12*z + 8 -> 6*z + 4
 		// 8*z + 4 -> 4*z + 2 -> 2*z + 1 -> 6*z + 4
-		if ((n0&7) == 5) return 0;
-		return delayInternal(n0, state.longest);
+		// Such a start is neither evaluated nor pruned, it's just skipped.
+		if ((n0&7) == 5) return;
+		final int threshold = state.threshold();
+		state.evaluated(n0, delayInternal(n0, threshold, state.counters), threshold);
 	}
 
 	/**
 	 * Return the {@link Collatz#delay}(x), if it's greater than {@code leastInteresting}.
 	 * Otherwise, a smaller number may be returned.
 	 */
-	private int delayInternal(long x, int leastInteresting) {
-		return x < LIMIT_FOR_LONG ? delayInternal64(x, leastInteresting) : delayInternal128(new MutableLong128(x), leastInteresting);
+	private int delayInternal(long x, int leastInteresting, HotPathCounters counters) {
+		counters.countStart();
+		return x < LIMIT_FOR_LONG ? delayInternal64(x, leastInteresting, counters) : delayInternal128(x, leastInteresting, counters);
 	}
 
-	private int delayInternal64(long x, int leastInteresting) {
+	int delayInternal64(long x, int leastInteresting, HotPathCounters counters) {
 		int result = 0;
 		final int mask = jumpingTable.mask();
 		final int evenSteps = jumpingTable.evenSteps();
 		final long limit = collatzTable.readLimit();
 		while (x>=limit || x<0) { // treat as unsigned
-			final int needed = leastInteresting - result;
-			if (needed>0) {
-				final long classRecord = Records.getClassRecord(needed);
-				if (x<classRecord && x>0) return 0;
-			}
+			if (PruningBounds.isHopeless(x, leastInteresting - result, counters)) return 0;
 			final int discriminant = (int) (x & mask);
 			final int oddSteps = jumpingTable.oddSteps(discriminant);
 			x = jumpingTable.addend(discriminant) + ((x >>> evenSteps) * JumpingTable.oddStepsToMultiplier(oddSteps));
 			result += oddSteps + evenSteps;
+			counters.countJump();
 		}
-		final int ntz0 = Long.numberOfTrailingZeros(x);
-		return result + ntz0 + collatzTable.get(x>>>ntz0);
+		return tableDelay(x, result, counters);
 	}
 
-	private int delayInternal128(MutableLong128 x, int leastInteresting) {
+	/**
+	 * Return {@code result} plus the {@link Collatz#delay}(x).
+	 * The {@code x} must be positive and below the readLimit of the {@link CollatzTable}.
+	 */
+	private int tableDelay(long x, int result, HotPathCounters counters) {
+		final int ntz = Long.numberOfTrailingZeros(x);
+		counters.countLookup(x>>>ntz);
+		return result + ntz + collatzTable.get(x>>>ntz);
+	}
+
+	/**
+	 * Like {@link #delayInternal64}, but working with 128 bits, so that no overflow can happen.
+	 * The value is kept in two locals rather than in a {@link MutableLong128}, so that nothing gets allocated.
+	 */
+	private int delayInternal128(long start, int leastInteresting, HotPathCounters counters) {
+		counters.countWide();
 		int result = 0;
 		final int mask = jumpingTable.mask();
 		final int evenSteps = jumpingTable.evenSteps();
+		long low = start;
+		long high = 0;
 		while (true) {
-			if (x.fitsInLong()) {
-				if (x.low() < LIMIT_FOR_LONG) break;
-				final int needed = leastInteresting - result;
-				if (needed>0) {
-					final long lowerBound = Records.getLowerBoundForDelay(needed);
-					if (x.low() < lowerBound) return 0;
-				}
-			}
-			final int discriminant = (int) (x.low() & mask);
+			if (high==0 & low>=0 && low < LIMIT_FOR_LONG) break;
+			if (high==0 && PruningBounds.isHopeless(low, leastInteresting - result, counters)) return 0;
+			final int discriminant = (int) (low & mask);
 			final int oddSteps = jumpingTable.oddSteps(discriminant);
 			final long multiplier = JumpingTable.oddStepsToMultiplier(oddSteps);
 
 			result += oddSteps + evenSteps;
+			counters.countJump();
 
-			x.shiftRight(evenSteps);
-			x.multiply(multiplier);
-			x.add(jumpingTable.addend(discriminant));
+			final long addend = jumpingTable.addend(discriminant);
+			final long newHigh = MutableLong128.jumpedHigh(low, high, evenSteps, multiplier, addend);
+			if (newHigh < 0) throw new ArithmeticException("Overflow");
+			low = MutableLong128.jumpedLow(low, high, evenSteps, multiplier, addend);
+			high = newHigh;
 		}
-		return result + delayInternal64(x.low(), leastInteresting-result);
+		return result + delayInternal64(low, leastInteresting-result, counters);
 	}
 
+	/** The {@link #limit}, which is the same for all instances. */
+	static final long LIMIT = 1_980976_057694_848447L + 1;
 	private static final long LIMIT_FOR_LONG = 8528817511L;
 
+	/** The number of trajectories followed in lockstep by {@link #maximizeInterleaved}. */
+	private static final int LANES = 8;
+
+	/** The maximum length of a range processed by a single {@link MaximizeTask}. */
+	private static final long SEGMENT_LENGTH = 9L << 16;
+
 	private final JumpingTable jumpingTable;
 	private final CollatzTable collatzTable;
+	/** The sieve used by {@link #maximize}, or null for the {@link #defaultSieve()}. */
+	private final ResidueSieve sieve;
 }
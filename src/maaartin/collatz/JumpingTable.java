@@ -32,6 +32,17 @@ import lombok.RequiredArgsConstructor;
 			}
 		}
 
+		private SmallJumpingTable(int evenSteps, int[] data) {
+			super(evenSteps, (1 << evenSteps) - 1);
+			checkArgument(2 <= evenSteps && evenSteps <= 17);
+			checkArgument(data.length == mask() + 1);
+			this.data = data;
+		}
+
+		@Override int[] data() {
+			return data;
+		}
+
 		@Override int oddSteps(int index) {
 			return data[index] >>> SHIFT;
 		}
@@ -48,7 +59,6 @@ import lombok.RequiredArgsConstructor;
 		private static final int LOW_MASK = (1 << SHIFT) - 1;
 
 		private final int[] data;
-
 	}
 
 	static class BigJumpingTable extends JumpingTable {
@@ -75,6 +85,17 @@ import lombok.RequiredArgsConstructor;
 			}
 		}
 
+		private BigJumpingTable(int evenSteps, int[] data) {
+			super(evenSteps, (1 << evenSteps) - 1);
+			checkArgument(2 <= evenSteps && evenSteps <= 29);
+			checkArgument(data.length == 2*mask() + 2);
+			this.data = data;
+		}
+
+		@Override int[] data() {
+			return data;
+		}
+
 		@Override int oddSteps(int index) {
 			return data[2*index+0];
 		}
@@ -87,7 +108,24 @@ import lombok.RequiredArgsConstructor;
 	}
 
 	static JumpingTable newTable(int evenSteps) {
-		return evenSteps<=17 ? new SmallJumpingTable(evenSteps) : new BigJumpingTable(evenSteps);
+		final CollatzEvents.JumpingTableCreation event = new CollatzEvents.JumpingTableCreation();
+		event.begin();
+		final JumpingTable result = evenSteps<=17 ? new SmallJumpingTable(evenSteps) : new BigJumpingTable(evenSteps);
+		if (event.shouldCommit()) {
+			event.evenSteps = evenSteps;
+			event.entries = result.mask() + 1L;
+			event.commit();
+		}
+		return result;
+	}
+
+	/**
+	 * Return a table using the array returned by {@link #data} of a table having the same {@code evenSteps},
+	 * which is what {@link JumpingTableFile} does in order to avoid the computation.
+	 * The array must not be modified anymore.
+	 */
+	static JumpingTable newTable(int evenSteps, int[] data) {
+		return evenSteps<=17 ? new SmallJumpingTable(evenSteps, data) : new BigJumpingTable(evenSteps, data);
 	}
 
 	@SuppressWarnings("boxing")
@@ -106,6 +144,19 @@ import lombok.RequiredArgsConstructor;
 	abstract int addend(int index);
 	abstract int oddSteps(int index);
 
+	/** Return the array containing the addends and the odd steps in a layout depending on the subclass. Must not be modified. */
+	abstract int[] data();
+
+	/** Return the peaks of the jumps, computing them on the first call. */
+	JumpPeaks peaks() {
+		JumpPeaks result = peaks;
+		if (result != null) return result;
+		synchronized (this) {
+			if (peaks == null) peaks = JumpPeaks.newPeaks(evenSteps);
+			return peaks;
+		}
+	}
+
 	static long oddStepsToMultiplier(int oddSteps) {
 		return POWERS_OF_THREE[oddSteps];
 	}
@@ -123,4 +174,6 @@ import lombok.RequiredArgsConstructor;
 
 	@Getter private final int evenSteps;
 	@Getter private final int mask;
+	/** Computed lazily, as they cost four longs per index and get needed by {@link TrajectoryStatistics} only. */
+	private volatile JumpPeaks peaks;
 }
@@ -0,0 +1,156 @@
+package maaartin.collatz;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * Persistence of {@link JumpingTable}s, so that short-lived processes needn't spend seconds on recomputing big tables.
+ *
+ * <p>The file consists of a header of {@value #HEADER_SIZE} bytes followed by the {@link JumpingTable#data}.
+ * Anything derived from it like the peaks needed by {@link TrajectoryStatistics} doesn't get stored, so that the file stays compact.
+ * The header contains the magic number, the format version, the evenSteps, the layout of the data, and a CRC32.
+ * The CRC32 covers the evenSteps and the layout, too, so that a file can't be mistaken for a different table having the same size.
+ * All values are stored as little-endian.
+ *
+ * <p>The tables get loaded by mapping the file and copying it into arrays in bulk.
+ * Using the mapped buffers directly would need a third subclass, making the calls in the hot loops megamorphic.
+ */
+final class JumpingTableFile {
+	private JumpingTableFile() {}
+
+	static void save(JumpingTable table, Path path) throws IOException {
+		final int layout = layout(table.evenSteps());
+		final CRC32 crc = newCrc(table.evenSteps(), layout);
+		try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			channel.position(HEADER_SIZE);
+			final int[] data = table.data();
+			for (int i=0; i<data.length; ) {
+				final int length = Math.min(data.length - i, BUFFER_SIZE / Integer.BYTES);
+				buffer.asIntBuffer().put(data, i, length);
+				buffer.position(length * Integer.BYTES);
+				writeEntries(channel, buffer, crc);
+				i += length;
+			}
+			writeHeader(channel, table.evenSteps(), layout, crc.getValue());
+		}
+	}
+
+	/** Return a table loaded from the file, after checking the checksum. */
+	static JumpingTable load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			final ByteBuffer header = readHeader(channel);
+			final int evenSteps = header.getInt();
+			final int layout = header.getInt();
+			header.getInt();
+			final long checksum = header.getLong();
+			if (evenSteps < 2 || evenSteps > 29) throw new IOException("Invalid evenSteps " + evenSteps);
+			if (layout != layout(evenSteps)) throw new IOException("Unsupported layout " + layout + " for evenSteps " + evenSteps);
+			final int[] data = new int[dataLength(evenSteps)];
+			if (channel.size() != HEADER_SIZE + (long) data.length * Integer.BYTES) throw new IOException("Invalid file size " + channel.size());
+			final CRC32 crc = newCrc(evenSteps, layout);
+			for (int i=0; i<data.length; ) {
+				final int length = Math.min(data.length - i, SEGMENT_SIZE / Integer.BYTES);
+				final ByteBuffer segment = map(channel, HEADER_SIZE + (long) i * Integer.BYTES, length * Integer.BYTES);
+				crc.update(segment.duplicate());
+				segment.asIntBuffer().get(data, i, length);
+				i += length;
+			}
+			if (crc.getValue() != checksum) throw new IOException("Checksum mismatch");
+			return JumpingTable.newTable(evenSteps, data);
+		}
+	}
+
+	/**
+	 * Return the table loaded from the file, if it exists.
+	 * Otherwise, create a {@link JumpingTable#newTable new table} and save it to the file.
+	 *
+	 * @throws IOException also if the file contains a table with different evenSteps
+	 */
+	static JumpingTable loadOrCreate(Path path, int evenSteps) throws IOException {
+		if (Files.exists(path)) {
+			final JumpingTable result = load(path);
+			if (result.evenSteps() != evenSteps) throw new IOException("Found evenSteps " + result.evenSteps() + " instead of " + evenSteps);
+			return result;
+		}
+		final JumpingTable result = JumpingTable.newTable(evenSteps);
+		// Concurrent processes may race for creating the file, but none of them may see it incomplete.
+		final Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			save(result, temp);
+			Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		return result;
+	}
+
+	/** Return 1 for the layout of a SmallJumpingTable and 2 for the one of a BigJumpingTable, as chosen by {@link JumpingTable#newTable}. */
+	private static int layout(int evenSteps) {
+		return evenSteps<=17 ? 1 : 2;
+	}
+
+	private static int dataLength(int evenSteps) {
+		return layout(evenSteps) << evenSteps;
+	}
+
+	private static CRC32 newCrc(int evenSteps, int layout) {
+		final CRC32 result = new CRC32();
+		result.update(ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(evenSteps).putInt(layout).flip());
+		return result;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, int size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static void writeEntries(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+		buffer.flip();
+		crc.update(buffer.duplicate());
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	private static void writeHeader(FileChannel channel, int evenSteps, int layout, long checksum) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putLong(MAGIC).putInt(VERSION).putInt(evenSteps).putInt(layout).putInt(0).putLong(checksum);
+		buffer.clear();
+		for (long position=0; buffer.hasRemaining(); ) position += channel.write(buffer, position);
+	}
+
+	/** Return the header positioned after the version, i.e., at the evenSteps. */
+	private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		for (long position=0; buffer.hasRemaining(); ) {
+			final int read = channel.read(buffer, position);
+			if (read<0) throw new IOException("Truncated header");
+			position += read;
+		}
+		buffer.flip();
+		if (buffer.getLong() != MAGIC) throw new IOException("Not a JumpingTable file");
+		final int version = buffer.getInt();
+		if (version != VERSION) throw new IOException("Unsupported version " + version);
+		return buffer;
+	}
+
+	/** "JUMPINGT" in ASCII. */
+	private static final long MAGIC = 0x5447_4E49_504D_554AL;
+	private static final int VERSION = 2;
+	/** The header gets padded, so that the entries are nicely aligned. */
+	private static final int HEADER_SIZE = 64;
+	private static final int BUFFER_SIZE = 1 << 20;
+	/** The number of bytes mapped at once, which must be less than 2 GB and a multiple of 4. */
+	private static final int SEGMENT_SIZE = 1 << 30;
+}
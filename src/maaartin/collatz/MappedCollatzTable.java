@@ -0,0 +1,81 @@
+package maaartin.collatz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only {@link CollatzTable} backed by a memory-mapped file written by {@link CollatzTableFile#save}.
+ *
+ * <p>As the mapping is shared, multiple JVMs using the same file share the page cache, too.
+ */
+final class MappedCollatzTable extends CollatzTable {
+	/** Map {@code readLimit/2} entries stored in the channel starting at {@code offset}. */
+	MappedCollatzTable(FileChannel channel, long offset, long readLimit) throws IOException {
+		this(map(channel, offset, readLimit/2), readLimit);
+	}
+
+	private MappedCollatzTable(ByteBuffer[] segments, long readLimit) {
+		super(readLimit, readLimit);
+		this.segments = segments;
+	}
+
+	private static ByteBuffer[] map(FileChannel channel, long offset, long length) throws IOException {
+		final int count = Math.toIntExact(((length - 1) >> LOG_SEGMENT_LENGTH) + 1);
+		final ByteBuffer[] result = new ByteBuffer[count];
+		for (int i=0; i<count; ++i) {
+			final long start = (long) i << LOG_SEGMENT_LENGTH;
+			final long size = 2 * Math.min(length - start, 1L << LOG_SEGMENT_LENGTH);
+			final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, offset + 2*start, size);
+			result[i] = segment.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return result;
+	}
+
+	@Override long computeLength(int logSize) {
+		return 1L << logSize;
+	}
+
+	@Override CollatzTable withReadLimit(long readLimit) {
+		return readLimit==readLimit() ? this : new MappedCollatzTable(segments, readLimit);
+	}
+
+	@Override int get(long n) {
+		assert hasEntry(n);
+		final long index = n >>> 1;
+		return segments[(int) (index >>> LOG_SEGMENT_LENGTH)].getShort((int) (index & SEGMENT_MASK) << 1);
+	}
+
+	@Override void set(long n, int value) {
+		throw new UnsupportedOperationException("Read-only table");
+	}
+
+	@Override void setAll(long index, ByteBuffer source) {
+		throw new UnsupportedOperationException("Read-only table");
+	}
+
+	@Override void getAll(long index, ByteBuffer target) {
+		while (target.hasRemaining()) {
+			final ByteBuffer source = segments[(int) (index >>> LOG_SEGMENT_LENGTH)].duplicate();
+			source.position((int) (index & SEGMENT_MASK) << 1);
+			source.limit(source.position() + Math.min(source.remaining(), target.remaining()));
+			index += source.remaining() / 2;
+			target.put(source);
+		}
+	}
+
+	/** Return the read-only segments, each containing up to 2<sup>{@value #LOG_SEGMENT_LENGTH}</sup> entries. */
+	ByteBuffer[] segments() {
+		final ByteBuffer[] result = new ByteBuffer[segments.length];
+		for (int i=0; i<result.length; ++i) result[i] = segments[i].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		return result;
+	}
+
+	/** The number of entries per segment is limited by the maximum {@link ByteBuffer} size. */
+	static final int LOG_SEGMENT_LENGTH = 29;
+	private static final long SEGMENT_MASK = (1L << LOG_SEGMENT_LENGTH) - 1;
+
+	private final ByteBuffer[] segments;
+}
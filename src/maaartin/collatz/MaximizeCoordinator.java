@@ -0,0 +1,252 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The coordinator of a {@link JumpingCollatz#maximize} distributed over multiple {@link MaximizeWorker} processes.
+ *
+ * <p>The range gets split into chunks, which get handed out to the workers connected over TCP.
+ * A chunk assigned to a worker which disconnects or doesn't answer within the timeout gets reassigned to another worker.
+ * When nothing is pending anymore, the idle workers get the chunks still processed by a single other worker,
+ * so that a dead worker delays nothing and the answers get checked.
+ * The two answers for such a chunk get compared, and if they differ, the run fails, as some worker must have computed a wrong result.
+ *
+ * <p>The protocol consists of big-endian values written by {@link DataOutputStream}:
+ * <ul>
+ * <li>The worker starts with {@link #MAGIC} and {@link #VERSION}, the coordinator answers with {@code min} and {@code max}.
+ * <li>The coordinator sends a chunk index followed by {@code from} and {@code to},
+ * the worker answers with the chunk index, the {@link JumpingCollatz#maximizePart result}, its delay,
+ * and the {@link JumpingCollatz.State#fingerprint} of the work done.
+ * <li>A negative chunk index tells the worker to finish.
+ * </ul>
+ */
+final class MaximizeCoordinator implements Closeable {
+	MaximizeCoordinator(long min, long max, long chunkLength, int port, long timeoutMillis) throws IOException {
+		checkArgument(0 < min && min <= max && max < JumpingCollatz.LIMIT);
+		checkArgument(chunkLength > 0 && timeoutMillis > 0);
+		this.min = min;
+		this.max = max;
+		this.chunkLength = chunkLength;
+		this.timeoutMillis = timeoutMillis;
+		effectiveMin = JumpingCollatz.effectiveMin(min, max);
+		final int chunkCount = Math.toIntExact((max - effectiveMin) / chunkLength + 1);
+		results = new long[chunkCount];
+		delays = new int[chunkCount];
+		fingerprints = new long[chunkCount];
+		workers = new int[chunkCount];
+		finished = new boolean[chunkCount];
+		remaining = new CountDownLatch(chunkCount);
+		for (int i=0; i<chunkCount; ++i) pending.add(i);
+		serverSocket = new ServerSocket(port);
+	}
+
+	public static void main(String[] args) throws Exception {
+		checkArgument(args.length == 4 || args.length == 5, "Usage: min max chunkLength port [timeoutSeconds]");
+		final long chunkLength = Long.parseLong(args[2]);
+		final long timeoutMillis = args.length == 5 ? TimeUnit.SECONDS.toMillis(Long.parseLong(args[4])) : defaultTimeoutMillis(chunkLength);
+		try (MaximizeCoordinator coordinator = new MaximizeCoordinator(
+				Long.parseLong(args[0]), Long.parseLong(args[1]), chunkLength, Integer.parseInt(args[3]), timeoutMillis)) {
+			System.out.println(coordinator.run());
+		}
+	}
+
+	/**
+	 * Return a timeout generous enough for a single core to process a chunk of the given length,
+	 * but short enough for the chunks of a dead worker to get reassigned soon.
+	 */
+	static long defaultTimeoutMillis(long chunkLength) {
+		return Math.max(MIN_TIMEOUT_MILLIS, chunkLength / NUMBERS_PER_MILLI);
+	}
+
+	/** Return the port listened on, which is useful when port 0 was requested. */
+	int port() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accept workers until all chunks are done and return the result of {@link JumpingCollatz#maximize}.
+	 *
+	 * @throws IllegalStateException if a chunk got answered twice with different answers
+	 */
+	long run() throws InterruptedException {
+		final Thread acceptor = new Thread(this::accept, "MaximizeCoordinator-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		remaining.await();
+		long result = -1;
+		int longest = -1;
+		synchronized (this) {
+			if (!mismatched.isEmpty()) throw new IllegalStateException("Chunks answered differently: " + mismatched);
+			for (int i=0; i<results.length; ++i) {
+				if (results[i] < 0 || delays[i] < longest || delays[i] == longest && results[i] > result) continue;
+				result = results[i];
+				longest = delays[i];
+			}
+		}
+		return result;
+	}
+
+	@Override public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	private void accept() {
+		while (remaining.getCount() > 0) {
+			try {
+				final Socket socket = serverSocket.accept();
+				final Thread handler = new Thread(() -> serve(socket), "MaximizeCoordinator-" + socket.getRemoteSocketAddress());
+				handler.setDaemon(true);
+				handler.start();
+			} catch (final SocketException e) {
+				return; // closed
+			} catch (final IOException e) {
+				// The next worker may have better luck.
+			}
+		}
+	}
+
+	/** Serve a single worker until all chunks are done or the connection fails. */
+	private void serve(Socket socket) {
+		int chunk = -1;
+		try (socket) {
+			socket.setSoTimeout(Math.toIntExact(timeoutMillis));
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			if (in.readLong() != MAGIC || in.readInt() != VERSION) return;
+			out.writeLong(min);
+			out.writeLong(max);
+			out.flush();
+			while (true) {
+				chunk = nextChunk();
+				if (chunk < 0) {
+					out.writeInt(-1);
+					out.flush();
+					return;
+				}
+				final long from = effectiveMin + chunk * chunkLength;
+				final long to = Math.min(max, from + chunkLength - 1);
+				out.writeInt(chunk);
+				out.writeLong(from);
+				out.writeLong(to);
+				out.flush();
+				final int answeredChunk = in.readInt();
+				final long n = in.readLong();
+				final int delay = in.readInt();
+				final long fingerprint = in.readLong();
+				if (answeredChunk != chunk) return;
+				finish(chunk, n, delay, fingerprint);
+				chunk = -1;
+			}
+		} catch (final IOException e) {
+			// The worker is considered dead.
+		} finally {
+			if (chunk >= 0) release(chunk);
+		}
+	}
+
+	/**
+	 * Return the next pending chunk, waiting while there's none, or -1 when all chunks are done.
+	 * When nothing is pending, a chunk being processed by a single other worker gets returned,
+	 * so that the idle workers check the answers of the others and take over from the dead ones.
+	 */
+	private int nextChunk() throws IOException {
+		try {
+			while (remaining.getCount() > 0) {
+				final Integer result = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (result != null) {
+					assign(result);
+					return result;
+				}
+				final int duplicate = duplicateChunk();
+				if (duplicate >= 0) return duplicate;
+			}
+			return -1;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	private synchronized void assign(int chunk) {
+		++workers[chunk];
+	}
+
+	/** Assign and return an unfinished chunk having exactly one worker, or return -1 if there's none. */
+	private synchronized int duplicateChunk() {
+		for (int i=0; i<workers.length; ++i) {
+			final int chunk = (nextDuplicate + i) % workers.length;
+			if (finished[chunk] || workers[chunk] != 1) continue;
+			nextDuplicate = chunk + 1;
+			++workers[chunk];
+			return chunk;
+		}
+		return -1;
+	}
+
+	/** Give up the chunk assigned to a failed worker, making it pending again, unless some other worker still processes it. */
+	private synchronized void release(int chunk) {
+		if (--workers[chunk] == 0 && !finished[chunk]) pending.add(chunk);
+	}
+
+	/** Store the answer for the chunk, or compare it with the stored one, if the chunk has been answered already. */
+	private synchronized void finish(int chunk, long n, int delay, long fingerprint) {
+		--workers[chunk];
+		if (finished[chunk]) {
+			if (results[chunk] != n || delays[chunk] != delay || fingerprints[chunk] != fingerprint) mismatched.add(chunk);
+			return;
+		}
+		finished[chunk] = true;
+		results[chunk] = n;
+		delays[chunk] = delay;
+		fingerprints[chunk] = fingerprint;
+		remaining.countDown();
+	}
+
+	/** An arbitrary number identifying the protocol. */
+	static final long MAGIC = 0x5752_4F4B_5A54_414CL;
+	static final int VERSION = 2;
+
+	private static final long MIN_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	/** A pessimistic estimate of the single core throughput, about a hundred times lower than for a range starting at {@code max/2}. */
+	private static final long NUMBERS_PER_MILLI = 10_000;
+	/** How often the waiting workers check whether everything's done. */
+	private static final long POLL_MILLIS = 100;
+
+	private final long min;
+	private final long max;
+	private final long chunkLength;
+	/** How long a worker may take for a chunk before being considered dead. */
+	private final long timeoutMillis;
+	/** The start of the first chunk, as smaller numbers are always dominated. */
+	private final long effectiveMin;
+
+	private final BlockingQueue<Integer> pending = new LinkedBlockingQueue<>();
+	private final long[] results;
+	private final int[] delays;
+	private final long[] fingerprints;
+	/** The number of workers processing every chunk. */
+	private final int[] workers;
+	/** Where {@link #duplicateChunk} starts searching, so that the duplicates get spread. */
+	private int nextDuplicate;
+	/** The chunks answered twice with different answers. */
+	private final List<Integer> mismatched = new ArrayList<>();
+	private final boolean[] finished;
+	private final CountDownLatch remaining;
+	private final ServerSocket serverSocket;
+}
@@ -0,0 +1,210 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * A {@link JumpingCollatz#maximize} over a possibly huge range, which survives the death of the JVM.
+ *
+ * <p>The range gets split into chunks of fixed length processed in parallel.
+ * The best number of every finished chunk gets appended to a checkpoint file,
+ * so that a job restarted with the same file only processes the remaining chunks.
+ *
+ * <p>The file consists of a header of {@value #HEADER_SIZE} bytes containing the magic number, the format version,
+ * {@code min}, {@code max} and the chunk length, followed by records of {@value #RECORD_SIZE} bytes,
+ * each containing the chunk index, the best number in the chunk (or -1), and its delay.
+ * All values are stored as little-endian. A truncated last record gets ignored.
+ *
+ * <p>The records get written by a dedicated thread in batches, so that the computing threads never wait for the disk.
+ * When the writer fails, no further chunks get started and its failure gets thrown.
+ */
+final class MaximizeJob {
+	private static final class Record {
+		Record(int chunk, long n, int delay) {
+			this.chunk = chunk;
+			this.n = n;
+			this.delay = delay;
+		}
+
+		private final int chunk;
+		private final long n;
+		private final int delay;
+	}
+
+	MaximizeJob(JumpingCollatz collatz, long min, long max, long chunkLength, Path path) {
+		checkArgument(0 < min && min <= max && max < collatz.limit());
+		checkArgument(chunkLength > 0);
+		this.collatz = collatz;
+		this.min = min;
+		this.max = max;
+		this.chunkLength = chunkLength;
+		this.path = checkNotNull(path);
+		effectiveMin = JumpingCollatz.effectiveMin(min, max);
+		chunkCount = Math.toIntExact((max - effectiveMin) / chunkLength + 1);
+	}
+
+	/** Process all chunks not finished according to the checkpoint file and return the result of {@link JumpingCollatz#maximize}. */
+	long run() throws IOException {
+		try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+			final List<Record> records = readCheckpoint(channel);
+			final BitSet finished = new BitSet(chunkCount);
+			for (final Record record : records) finished.set(record.chunk);
+
+			final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+			final Thread writer = new Thread(() -> writeCheckpoint(channel, queue), "MaximizeJob-writer");
+			final AtomicReference<IOException> failure = new AtomicReference<>();
+			writer.setUncaughtExceptionHandler((thread, e) -> failure.set(new IOException(e)));
+			writer.start();
+			try {
+				IntStream.range(0, chunkCount).filter(chunk -> !finished.get(chunk)).parallel().forEach(chunk -> {
+					// Computing chunks which can't be checkpointed anymore would be a waste of time.
+					if (failure.get() != null) throw new CancellationException("The checkpoint writer failed");
+					queue.add(computeRecord(chunk));
+				});
+			} catch (final CancellationException e) {
+				if (failure.get() == null) throw e;
+			} finally {
+				queue.add(END);
+				join(writer);
+			}
+			if (failure.get() != null) throw failure.get();
+
+			long result = -1;
+			int longest = -1;
+			for (final Record record : readCheckpoint(channel)) {
+				if (record.n < 0 || record.delay < longest || record.delay == longest && record.n > result) continue;
+				result = record.n;
+				longest = record.delay;
+			}
+			return result;
+		}
+	}
+
+	private Record computeRecord(int chunk) {
+		final long from = effectiveMin + chunk * chunkLength;
+		final long to = Math.min(max, from + chunkLength - 1);
+		final long n = collatz.maximizePart(min, max, from, to);
+		return new Record(chunk, n, n<0 ? -1 : collatz.delay(n));
+	}
+
+	/** Append the records from the queue to the file until {@link #END} comes. */
+	private void writeCheckpoint(FileChannel channel, BlockingQueue<Record> queue) {
+		final List<Record> batch = new ArrayList<>();
+		final ByteBuffer buffer = ByteBuffer.allocate(BATCH_SIZE * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				boolean done = false;
+				for (final Record record : batch) {
+					if (record == END) {
+						done = true;
+					} else {
+						buffer.putInt(record.chunk).putLong(record.n).putInt(record.delay);
+					}
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) channel.write(buffer, channel.size());
+				channel.force(false);
+				buffer.clear();
+				batch.clear();
+				if (done) return;
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Return the records stored in the file, after writing the header if the file is new or checking it otherwise.
+	 * A truncated record gets cut off, so that new records get appended properly.
+	 */
+	private List<Record> readCheckpoint(FileChannel channel) throws IOException {
+		final List<Record> result = new ArrayList<>();
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		if (channel.size() < HEADER_SIZE) {
+			header.putLong(MAGIC).putInt(VERSION).putLong(min).putLong(max).putLong(chunkLength);
+			header.clear();
+			channel.truncate(0);
+			for (long position=0; header.hasRemaining(); ) position += channel.write(header, position);
+			channel.force(false);
+			return result;
+		}
+		readFully(channel, header, 0);
+		if (header.getLong() != MAGIC) throw new IOException("Not a MaximizeJob checkpoint");
+		final int version = header.getInt();
+		if (version != VERSION) throw new IOException("Unsupported version " + version);
+		if (header.getLong() != min || header.getLong() != max || header.getLong() != chunkLength) {
+			throw new IOException("Checkpoint belongs to a different job");
+		}
+
+		final long count = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+		channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(count * RECORD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, buffer, HEADER_SIZE);
+		for (long i=0; i<count; ++i) {
+			final Record record = new Record(buffer.getInt(), buffer.getLong(), buffer.getInt());
+			if (record.chunk < 0 || record.chunk >= chunkCount) throw new IOException("Invalid chunk " + record.chunk);
+			result.add(record);
+		}
+		return result;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position);
+			if (read<0) throw new IOException("Truncated checkpoint");
+			position += read;
+		}
+		buffer.flip();
+	}
+
+	private static void join(Thread thread) throws IOException {
+		try {
+			thread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	/** "COLLATZJ" in ASCII. */
+	private static final long MAGIC = 0x4A5A_5441_4C4C_4F43L;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_SIZE = 16;
+	/** The maximum number of records written at once. */
+	private static final int BATCH_SIZE = 1024;
+	/** The marker telling the writer to finish. */
+	private static final Record END = new Record(-1, -1, -1);
+
+	private final JumpingCollatz collatz;
+	private final long min;
+	private final long max;
+	private final long chunkLength;
+	private final Path path;
+	/** The start of the first chunk, as smaller numbers are always dominated. */
+	private final long effectiveMin;
+	private final int chunkCount;
+}
@@ -0,0 +1,111 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A worker processing chunks handed out by a {@link MaximizeCoordinator}.
+ *
+ * <p>The {@link CollatzTable} gets cached in a file, so that only the first job on a machine pays for its construction.
+ * Every connection processes one chunk at a time, so a worker should open about as many connections as there are cores.
+ */
+final class MaximizeWorker {
+	MaximizeWorker(JumpingCollatz collatz) {
+		this.collatz = checkNotNull(collatz);
+	}
+
+	public static void main(String[] args) throws IOException {
+		checkArgument(args.length == 6, "Usage: host port tableCache logSize jumpingLogSize connections");
+		final JumpingTable jumpingTable = JumpingTable.newTable(Integer.parseInt(args[4]));
+		final CollatzTable collatzTable = cachedTable(jumpingTable, Paths.get(args[2]), Integer.parseInt(args[3]));
+		new MaximizeWorker(new JumpingCollatz(jumpingTable, collatzTable)).run(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[5]));
+	}
+
+	/**
+	 * Return the table {@link CollatzTableFile#map mapped} from the cache file,
+	 * after creating and {@link CollatzTableFile#save saving} it first if needed.
+	 *
+	 * <p>An existing file gets used only if it stores a table of the given {@code logSize} and its checksum is right,
+	 * otherwise it gets replaced, so that a stale or corrupted cache can't lead to wrong results.
+	 */
+	static CollatzTable cachedTable(JumpingTable jumpingTable, Path cache, int logSize) throws IOException {
+		if (Files.exists(cache)) {
+			try {
+				if (CollatzTableFile.logSize(cache) == logSize) return CollatzTableFile.map(cache, true);
+			} catch (final IOException e) {
+				// Unreadable or corrupted, so it gets rebuilt below.
+			}
+		}
+		// Concurrently starting workers never see a partial file, as it gets moved atomically; the loser of a race replaces an equal file.
+		CollatzTableFile.save(CollatzTable.newTable(jumpingTable, logSize), cache);
+		return CollatzTableFile.map(cache, false);
+	}
+
+	/**
+	 * Process chunks over the given number of concurrent connections until the coordinator says it's done,
+	 * so that a single worker uses multiple cores.
+	 */
+	void run(String host, int port, int connections) throws IOException {
+		checkArgument(connections > 0);
+		final List<Thread> threads = new ArrayList<>();
+		final AtomicReference<IOException> failure = new AtomicReference<>();
+		for (int i=0; i<connections; ++i) {
+			final Thread thread = new Thread(() -> {
+				try {
+					run(host, port);
+				} catch (final IOException e) {
+					failure.compareAndSet(null, e);
+				}
+			}, "MaximizeWorker-" + i);
+			thread.start();
+			threads.add(thread);
+		}
+		try {
+			for (final Thread thread : threads) thread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		if (failure.get() != null) throw failure.get();
+	}
+
+	/** Process chunks until the coordinator says it's done. */
+	void run(String host, int port) throws IOException {
+		try (Socket socket = new Socket(host, port)) {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeLong(MaximizeCoordinator.MAGIC);
+			out.writeInt(MaximizeCoordinator.VERSION);
+			out.flush();
+			final long min = in.readLong();
+			final long max = in.readLong();
+			while (true) {
+				final int chunk = in.readInt();
+				if (chunk < 0) return;
+				final long from = in.readLong();
+				final long to = in.readLong();
+				final JumpingCollatz.State state = collatz.maximizePartState(min, max, from, to);
+				out.writeInt(chunk);
+				out.writeLong(state.reportedResult());
+				out.writeInt(state.longest);
+				out.writeLong(state.fingerprint);
+				out.flush();
+			}
+		}
+	}
+
+	private final JumpingCollatz collatz;
+}
@@ -16,7 +16,7 @@ import com.google.common.primitives.UnsignedLongs;
  *
  * <p>Speed is the goal, general usability is not given.
  */
-@Getter @EqualsAndHashCode final class MutableLong128 implements Cloneable {
+@Getter @EqualsAndHashCode final class MutableLong128 implements Cloneable, Comparable<MutableLong128> {
 	MutableLong128() {
 		this(0, 0);
 	}
@@ -58,6 +58,10 @@ import com.google.common.primitives.UnsignedLongs;
 		return String.format("0x%X%016X", high, low);
 	}
 
+	@Override public int compareTo(MutableLong128 other) {
+		return high != other.high ? Long.compare(high, other.high) : Long.compareUnsigned(low, other.low);
+	}
+
 	public boolean fitsInLong() {
 		return high==0 & low>=0;
 	}
@@ -121,6 +125,54 @@ import com.google.common.primitives.UnsignedLongs;
 		high = composeLowHigh(p2, p3);
 	}
 
+	/**
+	 * Set {@code this} to {@code (this >>> distance) * multiplier + addend}, which is what a jump of {@link JumpingCollatz} does.
+	 * This is equivalent to calling {@link #shiftRight}, {@link #multiply}, and {@link #add}, but much faster,
+	 * as {@link Math#multiplyHigh} gets used and the overflow gets tested only once.
+	 *
+	 * @param distance a number between 0 and 63
+	 * @param multiplier a non-negative number
+	 * @param addend a non-negative number
+	 */
+	public void jump(int distance, long multiplier, long addend) {
+		if (!tryJump(distance, multiplier, addend)) throw new ArithmeticException("Overflow");
+	}
+
+	/** Like {@link #jump}, but return false and leave {@code this} unchanged if the result doesn't fit. */
+	public boolean tryJump(int distance, long multiplier, long addend) {
+		final long newHigh = jumpedHigh(low, high, distance, multiplier, addend);
+		if (newHigh < 0) return false;
+		low = jumpedLow(low, high, distance, multiplier, addend);
+		high = newHigh;
+		return true;
+	}
+
+	/**
+	 * Return the lower 64 bits of the result of a {@link #jump} from {@code low + 2**64 * high}.
+	 * Together with {@link #jumpedHigh}, this allows to jump without any instance, as the JIT computes the common parts once.
+	 */
+	static long jumpedLow(long low, long high, int distance, long multiplier, long addend) {
+		// The double shift makes distance=0 work.
+		final long shiftedLow = (low >>> distance) | (high << 1 << ~distance);
+		return shiftedLow * multiplier + addend;
+	}
+
+	/** Return the upper 64 bits of the result of a {@link #jump} from {@code low + 2**64 * high}, or a negative number if it doesn't fit. */
+	static long jumpedHigh(long low, long high, int distance, long multiplier, long addend) {
+		assert 0 <= distance && distance < 64 && multiplier >= 0 && addend >= 0;
+		final long shiftedLow = (low >>> distance) | (high << 1 << ~distance);
+		final long shiftedHigh = high >>> distance;
+		final long productLow = shiftedLow * multiplier;
+		// The unsigned high part of the product, as the multiplier is non-negative.
+		final long productHigh = Math.multiplyHigh(shiftedLow, multiplier) + ((shiftedLow >> 63) & multiplier);
+		final long newLow = productLow + addend;
+		final long carry = Long.compareUnsigned(newLow, productLow) < 0 ? 1 : 0;
+		final long upperProduct = shiftedHigh * multiplier;
+		final long result = upperProduct + productHigh + carry;
+		// Neither the upper product may exceed 63 bits nor the sum may become negative.
+		return Math.multiplyHigh(shiftedHigh, multiplier) != 0 | (upperProduct | result) < 0 ? -1 : result;
+	}
+
 	/** Shift {@code this} to the by 0 to 127 bits. */
 	public void shiftRight(int distance) {
 		checkArgument(distance>=0 && distance<128);
@@ -2,62 +2,106 @@ package maaartin.collatz;
 
 import java.math.BigInteger;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
-import com.google.caliper.BeforeExperiment;
-import com.google.caliper.Benchmark;
-import com.google.caliper.runner.CaliperMain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
-import de.grajcar.dout.Dout;
-
-class MutableLong128Benchmark {
-	public static void main(String[] args) {
-		Dout.a("STARTED");
-		CaliperMain.main(MutableLong128Benchmark.class, args);
+/** Compares the arithmetic of {@link MutableLong128} to {@link BigInteger}, and the {@link MutableLong128#jump} to its parts. */
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1) @Measurement(iterations=5, time=1) @Fork(1)
+@State(Scope.Thread) public class MutableLong128Benchmark {
+	public static void main(String[] args) throws Exception {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		final OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLineOptions);
+		if (commandLineOptions.getIncludes().isEmpty()) options.include(MutableLong128Benchmark.class.getSimpleName());
+		new Runner(options.build()).run();
 	}
 
-	@BeforeExperiment public void setUp() {
+	@Setup public void setUp() {
 		final JumpingTable jumpingTable = JumpingTable.newTable(17);
 		final Random random = new Random(0);
 		for (int i=0; i<SIZE; ++i) {
-			final int oddSteps = jumpingTable.oddSteps(random.nextInt(1 << 17));
+			final int discriminant = random.nextInt(1 << 17);
+			final int oddSteps = jumpingTable.oddSteps(discriminant);
 			xl[i] = JumpingTable.oddStepsToMultiplier(oddSteps);
 			xb[i] = BigInteger.valueOf(xl[i]);
+			addends[i] = jumpingTable.addend(discriminant);
 			ym[i] = new MutableLong128(random.nextLong(), random.nextInt(3));
 			yb[i] = ym[i].toBigInteger();
 		}
 	}
 
-	@Benchmark public long timeBigInteger(int reps) {
+	@Benchmark public long bigInteger() {
+		long result = 0;
+		for (int i=0; i<SIZE; ++i) {
+			final BigInteger x = xb[i];
+			final BigInteger y = yb[i];
+			result += y.multiply(x).hashCode();
+		}
+		return result;
+	}
+
+	@Benchmark public long mutableLong() {
 		long result = 0;
-		while (reps-->0) {
-			for (int i=0; i<SIZE; ++i) {
-				final BigInteger x = xb[i];
-				final BigInteger y = yb[i];
-				result += y.multiply(x).hashCode();
-			}
+		for (int i=0; i<SIZE; ++i) {
+			final long x = xl[i];
+			final MutableLong128 y = ym[i];
+			final long low = y.low();
+			final long high = y.high();
+			y.multiply(x);
+			result += y.hashCode();
+			y.setTo(low, high); // restore old value
 		}
 		return result;
 	}
 
-	@Benchmark public long timeMutableLong(int reps) {
+	/** The jump as it used to be done in {@link JumpingCollatz}. */
+	@Benchmark public long separateJump() {
 		long result = 0;
-		while (reps-->0) {
-			for (int i=0; i<SIZE; ++i) {
-				final long x = xl[i];
-				final MutableLong128 y = ym[i];
-				final long low = y.low();
-				final long high = y.high();
-				y.multiply(x);
-				result += y.hashCode();
-				y.setTo(low, high); // restore old value
-			}
+		for (int i=0; i<SIZE; ++i) {
+			final MutableLong128 y = ym[i];
+			final long low = y.low();
+			final long high = y.high();
+			y.shiftRight(EVEN_STEPS);
+			y.multiply(xl[i]);
+			y.add(addends[i]);
+			result += y.hashCode();
+			y.setTo(low, high); // restore old value
+		}
+		return result;
+	}
+
+	@Benchmark public long fusedJump() {
+		long result = 0;
+		for (int i=0; i<SIZE; ++i) {
+			final MutableLong128 y = ym[i];
+			final long low = y.low();
+			final long high = y.high();
+			y.jump(EVEN_STEPS, xl[i], addends[i]);
+			result += y.hashCode();
+			y.setTo(low, high); // restore old value
 		}
 		return result;
 	}
 
 	private static final int SIZE = 1000;
+	private static final int EVEN_STEPS = 17;
 
 	private final long[] xl = new long[SIZE];
+	private final long[] addends = new long[SIZE];
 	private final MutableLong128[] ym = new MutableLong128[SIZE];
 
 	private final BigInteger[] xb = new BigInteger[SIZE];
@@ -62,4 +62,27 @@ public class MutableLong128Test extends TestCase {
 			assertEquals(expected, actual);
 		}
 	}
+
+	public void testJump() {
+		final Random random = new Random(0);
+		for (int i=0; i<500_000; ++i) {
+			final int distance = random.nextInt(64);
+			final long multiplier = JumpingTable.oddStepsToMultiplier(random.nextInt(40));
+			final long addend = random.nextLong() >>> 1;
+			final long low = random.nextLong();
+			final long high = random.nextBoolean() ? random.nextLong() >>> (1 + random.nextInt(63)) : 0;
+			final MutableLong128 z = new MutableLong128(low, high);
+			final BigInteger expected = z.toBigInteger().shiftRight(distance).multiply(BigInteger.valueOf(multiplier)).add(BigInteger.valueOf(addend));
+			if (expected.bitLength() > 127) {
+				try {
+					z.jump(distance, multiplier, addend);
+					fail();
+				} catch (final ArithmeticException e) {
+					continue;
+				}
+			}
+			z.jump(distance, multiplier, addend);
+			assertEquals(expected, z.toBigInteger());
+		}
+	}
 }
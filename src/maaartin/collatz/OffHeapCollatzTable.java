@@ -0,0 +1,111 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A {@link CollatzTable} backed by direct buffers, allowing the readLimit to exceed 2<sup>32</sup>.
+ *
+ * <p>Note that the JVM limits the total size of direct buffers by {@code -XX:MaxDirectMemorySize}.
+ */
+final class OffHeapCollatzTable extends CollatzTable {
+	/**
+	 * Create a new table of size computed as 2<sup>logSize</sup>, using 2<sup>logSize+1</sup> bytes.
+	 *
+	 * <p> All table values but the first are initialized to -1, meaning unset.
+	 */
+	OffHeapCollatzTable(int logSize) {
+		this(allocate(logSize), 2);
+		set(1, 0);
+	}
+
+	private OffHeapCollatzTable(ByteBuffer[] segments, long readLimit) {
+		super(readLimit, (long) segments.length * segments[0].capacity());
+		this.segments = segments;
+	}
+
+	private static ByteBuffer[] allocate(int logSize) {
+		checkArgument(0 < logSize && logSize <= MAX_LOG_SIZE);
+		final int logSegmentLength = Math.min(logSize, LOG_SEGMENT_LENGTH);
+		final ByteBuffer[] result = new ByteBuffer[1 << (logSize - logSegmentLength)];
+		for (int i=0; i<result.length; ++i) {
+			final ByteBuffer segment = ByteBuffer.allocateDirect(2 << logSegmentLength).order(ByteOrder.LITTLE_ENDIAN);
+			while (segment.remaining() >= 8) segment.putLong(-1);
+			while (segment.hasRemaining()) segment.putShort((short) -1);
+			result[i] = segment;
+		}
+		return result;
+	}
+
+	@Override long computeLength(int logSize) {
+		checkArgument(0 < logSize && logSize <= MAX_LOG_SIZE);
+		return 1L << logSize;
+	}
+
+	@Override CollatzTable withReadLimit(long readLimit) {
+		return new OffHeapCollatzTable(segments, readLimit);
+	}
+
+	@Override int get(long n) {
+		assert hasEntry(n);
+		final long index = n >>> 1;
+		return segments[(int) (index >>> LOG_SEGMENT_LENGTH)].getShort((int) (index & SEGMENT_MASK) << 1);
+	}
+
+	@Override void set(long n, int value) {
+		assert (n&1) != 0 & n > 0 && n < writeLimit();
+		final long index = n >>> 1;
+		segments[(int) (index >>> LOG_SEGMENT_LENGTH)].putShort((int) (index & SEGMENT_MASK) << 1, (short) value);
+	}
+
+	@Override int getLazily(long n) {
+		assert (n&1) != 0 & n > 0 && n < writeLimit();
+		final long index = n >>> 1;
+		return (short) SHORT_VIEW.getOpaque(segments[(int) (index >>> LOG_SEGMENT_LENGTH)], (int) (index & SEGMENT_MASK) << 1);
+	}
+
+	@Override void setLazily(long n, int value) {
+		assert (n&1) != 0 & n > 0 && n < writeLimit();
+		final long index = n >>> 1;
+		SHORT_VIEW.setOpaque(segments[(int) (index >>> LOG_SEGMENT_LENGTH)], (int) (index & SEGMENT_MASK) << 1, (short) value);
+	}
+
+	@Override void setAll(long index, ByteBuffer source) {
+		final ByteBuffer remaining = source.duplicate();
+		while (remaining.hasRemaining()) {
+			final ByteBuffer target = segments[(int) (index >>> LOG_SEGMENT_LENGTH)].duplicate();
+			target.position((int) (index & SEGMENT_MASK) << 1);
+			final int length = Math.min(target.remaining(), remaining.remaining());
+			final ByteBuffer chunk = remaining.duplicate();
+			chunk.limit(chunk.position() + length);
+			target.put(chunk);
+			remaining.position(remaining.position() + length);
+			index += length / 2;
+		}
+	}
+
+	@Override void getAll(long index, ByteBuffer target) {
+		while (target.hasRemaining()) {
+			final ByteBuffer source = segments[(int) (index >>> LOG_SEGMENT_LENGTH)].duplicate();
+			source.position((int) (index & SEGMENT_MASK) << 1);
+			source.limit(source.position() + Math.min(source.remaining(), target.remaining()));
+			index += source.remaining() / 2;
+			target.put(source);
+		}
+	}
+
+	/** The maximum logSize, requiring 128 GB. */
+	static final int MAX_LOG_SIZE = 36;
+
+	/** The number of entries per segment is limited by the maximum {@link ByteBuffer} size. */
+	private static final int LOG_SEGMENT_LENGTH = 29;
+	private static final long SEGMENT_MASK = (1L << LOG_SEGMENT_LENGTH) - 1;
+	/** The aligned access to the shorts is atomic. */
+	private static final VarHandle SHORT_VIEW = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final ByteBuffer[] segments;
+}
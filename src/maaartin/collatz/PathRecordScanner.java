@@ -0,0 +1,128 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Finds the path records, i.e., the numbers whose trajectory reaches a higher {@link TrajectoryStatistics#peak}
+ * than those of all smaller numbers, just like those listed in {@link Records#getPathRecords}.
+ *
+ * <p>The numbers get scanned in increasing order and every record gets reported as soon as it's found.
+ * Above {@value #MODULUS}, only the numbers {@link #SURVIVORS congruent} to 3 modulo 4 and neither to 2 modulo 3
+ * nor to 4 modulo 9 get considered, as all others get dominated by a smaller number with no lower peak:
+ * <ul>
+ * <li>2*z gets dominated by 2*z - 1 reaching 6*z - 2.
+ * <li>4*z + 1 (including 8*z + 5) reaches 12*z + 4 and 3*z + 1, and gets dominated by 4*z - 1 reaching 18*z - 2.
+ * <li>3*z + 2 gets dominated by 2*z + 1 reaching 6*z + 4 -> 3*z + 2.
+ * <li>9*z + 4 gets dominated by 8*z + 3 reaching 24*z + 10 -> 12*z + 5 -> 36*z + 16 -> 18*z + 8 -> 9*z + 4.
+ * </ul>
+ *
+ * <p>A trajectory gets followed only until it drops below its start, as the rest of it can't reach a new peak.
+ */
+final class PathRecordScanner {
+	@Getter @EqualsAndHashCode @ToString @RequiredArgsConstructor static final class PathRecord {
+		private final long n;
+		private final BigInteger peak;
+	}
+
+	/** The state of a single scan, which can't be shared by threads. */
+	private final class Walk {
+		Walk(BigInteger previousPeak) {
+			record = new MutableLong128(previousPeak);
+		}
+
+		/** Return a new record, if {@code n} reaches a higher peak than all numbers considered before, otherwise null. */
+		PathRecord update(long n) {
+			x.setTo(n, 0);
+			peak.setTo(n, 0);
+			while (x.high() != 0 || x.low() != 1 && Long.compareUnsigned(x.low(), n) >= 0) {
+				if (x.high() == 0 && x.low() >= 0 && x.low() <= jumpingTable.mask()) {
+					// Small values get processed step by step, as jumping from them could run into the cycle.
+					TrajectoryStatistics.step(x, peak);
+				} else {
+					TrajectoryStatistics.jump(jumpingTable, peaks, x, peak, bound);
+				}
+			}
+			if (peak.compareTo(record) <= 0) return null;
+			record.setTo(peak.low(), peak.high());
+			return new PathRecord(n, peak.toBigInteger());
+		}
+
+		private final MutableLong128 x = new MutableLong128();
+		private final MutableLong128 peak = new MutableLong128();
+		private final MutableLong128 bound = new MutableLong128();
+		/** The highest peak found so far. */
+		private final MutableLong128 record;
+	}
+
+	PathRecordScanner(JumpingTable jumpingTable) {
+		this.jumpingTable = checkNotNull(jumpingTable);
+		peaks = jumpingTable.peaks();
+	}
+
+	/**
+	 * Report all records between {@code from} and {@code to} to the consumer.
+	 *
+	 * @param previousPeak the peak of the last record below {@code from}, or zero if {@code from} is 1
+	 * @throws ArithmeticException if a peak exceeds 127 bits, which doesn't happen below the {@link JumpingCollatz#limit}
+	 */
+	void scan(long from, long to, BigInteger previousPeak, Consumer<PathRecord> consumer) {
+		scan(from, to, previousPeak, consumer, () -> false);
+	}
+
+	/** Return a publisher which runs a new {@link #scan} in a new thread for every subscriber, just like {@link DelayRecordScanner#publisher}. */
+	Flow.Publisher<PathRecord> publisher(long from, long to, BigInteger previousPeak) {
+		checkArgument(0 < from && from <= to);
+		return DelayRecordScanner.publisher("PathRecordScanner", (consumer, cancelled) -> scan(from, to, previousPeak, consumer, cancelled));
+	}
+
+	/** Like {@link #scan(long, long, BigInteger, Consumer)}, but throw a {@link CancellationException} as soon as {@code cancelled} returns true. */
+	private void scan(long from, long to, BigInteger previousPeak, Consumer<PathRecord> consumer, BooleanSupplier cancelled) {
+		checkArgument(0 < from && from <= to);
+		checkArgument(previousPeak.signum() > 0 || previousPeak.signum() == 0 && from == 1);
+		checkNotNull(consumer);
+		final Walk walk = new Walk(previousPeak);
+		final long sievedFrom = ResidueSieve.sievedMin(from, MODULUS);
+		final long sievedTo = ResidueSieve.sievedMax(to, MODULUS);
+		if (sievedFrom >= sievedTo) {
+			scanSimply(walk, from, to, consumer);
+			return;
+		}
+		scanSimply(walk, from, sievedFrom-1, consumer);
+		for (long base=sievedFrom; base<sievedTo; base+=MODULUS) {
+			if ((base & CANCELLATION_CHECK_MASK) < MODULUS && cancelled.getAsBoolean()) throw new CancellationException();
+			for (final int r : SURVIVORS) {
+				final PathRecord record = walk.update(base + r);
+				if (record != null) consumer.accept(record);
+			}
+		}
+		scanSimply(walk, sievedTo+1, to, consumer);
+	}
+
+	private void scanSimply(Walk walk, long from, long to, Consumer<PathRecord> consumer) {
+		for (long n=from; n<=to; ++n) {
+			final PathRecord record = walk.update(n);
+			if (record != null) consumer.accept(record);
+		}
+	}
+
+	private static final int MODULUS = 36;
+	/** The residues modulo {@link #MODULUS} which can't be skipped. */
+	private static final int[] SURVIVORS = {3, 7, 15, 19, 27};
+	/** Checking for cancellation only about once per this many numbers, as the blocks are tiny. */
+	private static final long CANCELLATION_CHECK_MASK = (1 << 16) - 1;
+
+	private final JumpingTable jumpingTable;
+	private final JumpPeaks peaks;
+}
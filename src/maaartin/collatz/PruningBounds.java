@@ -0,0 +1,20 @@
+package maaartin.collatz;
+
+/**
+ * Bounds telling that a value can't reach the needed delay, so that its trajectory needn't be followed any further.
+ *
+ * <p>The smallest numbers reaching a given delay from {@link Records} get used.
+ * They're exact up to the last known delay record, so that no bound based on the magnitude only can be tighter.
+ * No value needing more than 63 bits is below them, so that nothing can be pruned before a trajectory fits in a long.
+ */
+final class PruningBounds {
+	private PruningBounds() {}
+
+	/** Return true if {@code x} and all numbers below it are known to have a delay less than {@code needed}. */
+	static boolean isHopeless(long x, int needed, HotPathCounters counters) {
+		// The class record would be too optimistic, as smaller numbers may have a longer delay.
+		final boolean result = needed>0 && x>0 && x<Records.getLowerBoundForDelay(needed);
+		if (result) counters.countHopeless();
+		return result;
+	}
+}
@@ -2,8 +2,10 @@ package maaartin.collatz;
 
 import static com.google.common.base.Verify.verify;
 
+import java.math.BigInteger;
 
-// Build from http://www.ericr.nl/wondrous/classrec.html and http://www.ericr.nl/wondrous/delrecs.html
+
+// Build from http://www.ericr.nl/wondrous/classrec.html, http://www.ericr.nl/wondrous/delrecs.html, and http://www.ericr.nl/wondrous/pathrecs.html
 final class Records {
 	public static long getClassRecord(int delay) {
 		return CLASS_RECORDS[Math.min(CLASS_RECORDS.length-1, delay)];
@@ -27,6 +29,24 @@ final class Records {
 		return LOWER_BOUNDS_FOR_DELAY[Math.min(LOWER_BOUNDS_FOR_DELAY.length-1, delay)];
 	}
 
+	/**
+	 * Return the known delay records, i.e., the numbers having a longer {@link Collatz#delay} than all smaller numbers,
+	 * as alternating delays and numbers.
+	 */
+	public static long[] getDelayRecords() {
+		return DELAY_RECORDS.clone();
+	}
+
+	/**
+	 * Return the known path records below 10<sup>11</sup>, i.e., the numbers whose trajectory reaches a higher peak than those of all smaller numbers,
+	 * as alternating numbers and peaks.
+	 */
+	public static BigInteger[] getPathRecords() {
+		final BigInteger[] result = new BigInteger[PATH_RECORDS.length];
+		for (int i=0; i<result.length; ++i) result[i] = new BigInteger(PATH_RECORDS[i]);
+		return result;
+	}
+
 	private static final long[] CLASS_RECORDS = {0L,
 		2L, 4L, 8L, 16L, 5L, 10L, 3L, 6L,
 		12L, 24L, 48L, 17L, 34L, 11L, 22L, 7L,
@@ -422,6 +442,64 @@ final class Records {
 		2255, 209798591621802462L,
 	};
 
+	/** The peaks mostly don't fit in a long. */
+	private static final String[] PATH_RECORDS = {
+		"1", "1",
+		"2", "2",
+		"3", "16",
+		"7", "52",
+		"15", "160",
+		"27", "9232",
+		"255", "13120",
+		"447", "39364",
+		"639", "41524",
+		"703", "250504",
+		"1819", "1276936",
+		"4255", "6810136",
+		"4591", "8153620",
+		"9663", "27114424",
+		"20895", "50143264",
+		"26623", "106358020",
+		"31911", "121012864",
+		"60975", "593279152",
+		"77671", "1570824736",
+		"113383", "2482111348",
+		"138367", "2798323360",
+		"159487", "17202377752",
+		"270271", "24648077896",
+		"665215", "52483285312",
+		"704511", "56991483520",
+		"1042431", "90239155648",
+		"1212415", "139646736808",
+		"1441407", "151629574372",
+		"1875711", "155904349696",
+		"1988859", "156914378224",
+		"2643183", "190459818484",
+		"2684647", "352617812944",
+		"3041127", "622717901620",
+		"3873535", "858555169576",
+		"4637979", "1318802294932",
+		"5656191", "2412493616608",
+		"6416623", "4799996945368",
+		"6631675", "60342610919632",
+		"19638399", "306296925203752",
+		"38595583", "474637698851092",
+		"80049391", "2185143829170100",
+		"120080895", "3277901576118580",
+		"210964383", "6404797161121264",
+		"319804831", "1414236446719942480",
+		"1410123943", "7125885122794452160",
+		"8528817511", "18144594937356598024",
+		"12327829503", "20722398914405051728",
+		"23035537407", "68838156641548227040",
+		"45871962271", "82341648902022834004",
+		"51739336447", "114639617141613998440",
+		"59152641055", "151499365062390201544",
+		"59436135663", "205736389371841852168",
+		"70141259775", "420967113788389829704",
+		"77566362559", "916613029076867799856",
+	};
+
 	private static final long[] LOWER_BOUNDS_FOR_DELAY = new long[(int) DELAY_RECORDS[DELAY_RECORDS.length-2] + 1];
 	static {
 		for (int delay=0, j=0; delay<LOWER_BOUNDS_FOR_DELAY.length; ++delay) {
@@ -0,0 +1,170 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import lombok.Getter;
+
+import com.google.common.math.IntMath;
+
+/**
+ * A sieve telling which starts can be skipped when {@link Collatz#maximize maximizing} over a range from {@code max/2} to {@code max},
+ * working modulo 2<sup>log2</sup> * 3<sup>log3</sup>.
+ *
+ * <p>A start gets skipped if it's provably dominated, i.e., if there's another start in the range having a longer delay
+ * or the same delay and being smaller. There are two reasons for this:
+ * <ul>
+ * <li>Two starts {@code 2**log2 * q + r} and {@code 2**log2 * q + r'} coalesce after {@code log2} steps of the form
+ * {@code x -> x/2} or {@code x -> (3*x+1)/2}, if their residues {@code r} and {@code r'} lead to the same value using
+ * the same number of odd steps, as the result is {@code 3**oddSteps * q + value}. Then the bigger one gets dominated.
+ * For example, the trajectories of 8k + 4 and 8k + 5 coalesce after 3 steps.
+ * <li>A start {@code n} having a predecessor {@code m < n} (i.e., {@code n} lies on the trajectory of {@code m}) gets dominated
+ * by {@code m * 2**e} for a suitable {@code e}. Whether such a predecessor exists depends on {@code n mod 2 * 3**log3} only.
+ * For example, 6*z + 1 -> 18*z + 4 -> 9*z + 2.
+ * </ul>
+ *
+ * <p>The skipping is valid only for blocks lying completely in the range and starting above the {@link #modulus}.
+ */
+final class ResidueSieve {
+	private ResidueSieve(int log2, int log3) {
+		checkArgument(3 <= log2 && log2 <= MAX_LOG2);
+		checkArgument(0 <= log3 && log3 <= MAX_LOG3);
+		this.log2 = log2;
+		this.log3 = log3;
+		final int powerOfThree = IntMath.pow(3, log3);
+		modulus = powerOfThree << log2;
+		final boolean[] dominated2 = computeDominated2(log2);
+		final boolean[] dominated3 = computeDominated3(log3);
+		int count = 0;
+		for (int r=0; r<modulus; ++r) {
+			if (!isDominated(r, dominated2, dominated3)) ++count;
+		}
+		survivors = new int[count];
+		for (int r=0, i=0; r<modulus; ++r) {
+			if (!isDominated(r, dominated2, dominated3)) survivors[i++] = r;
+		}
+	}
+
+	private static boolean isDominated(int r, boolean[] dominated2, boolean[] dominated3) {
+		final int powerOfThree = dominated3.length / 2;
+		return dominated2[r & (dominated2.length - 1)] || dominated3[(r&1) * powerOfThree + r % powerOfThree];
+	}
+
+	/** Return a sieve working modulo 2<sup>log2</sup> * 3<sup>log3</sup>. */
+	static ResidueSieve newSieve(int log2, int log3) {
+		return new ResidueSieve(log2, log3);
+	}
+
+	/**
+	 * Return a boolean array telling for every residue modulo 2<sup>log2</sup>,
+	 * whether there's a smaller residue whose trajectory coalesces after {@code log2} steps.
+	 */
+	private static boolean[] computeDominated2(int log2) {
+		// Combine the value reached (below 3**20 < 2**32), the number of odd steps (below 2**5), and the residue (below 2**20).
+		final long[] keys = new long[1 << log2];
+		for (int r=0; r<keys.length; ++r) {
+			long x = r;
+			int oddSteps = 0;
+			for (int i=0; i<log2; ++i) {
+				if ((x&1) == 0) {
+					x >>= 1;
+				} else {
+					x += (x>>1) + 1;
+					++oddSteps;
+				}
+			}
+			keys[r] = (((x << 5) + oddSteps) << MAX_LOG2) + r;
+		}
+		Arrays.sort(keys);
+		final boolean[] result = new boolean[keys.length];
+		for (int i=1; i<keys.length; ++i) {
+			if (keys[i] >>> MAX_LOG2 == keys[i-1] >>> MAX_LOG2) result[(int) (keys[i] & ((1<<MAX_LOG2) - 1))] = true;
+		}
+		return result;
+	}
+
+	/**
+	 * Return a boolean array telling for every even and then every odd residue modulo 3<sup>log3</sup>,
+	 * whether there's a smaller predecessor.
+	 */
+	private static boolean[] computeDominated3(int log3) {
+		final int powerOfThree = IntMath.pow(3, log3);
+		final boolean[] result = new boolean[2 * powerOfThree];
+		for (int parity=0; parity<2; ++parity) {
+			for (int t=0; t<powerOfThree; ++t) {
+				result[parity * powerOfThree + t] = hasSmallerPredecessor(t, log3, 0, 0, parity==0);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return true if the number {@code x = (2**exponent2 * n - c) / 3**exponent3} has a predecessor
+	 * {@code (2**e * x - 1) / 3} leading to a value smaller than {@code n}.
+	 *
+	 * @param numerator the value of {@code 2**exponent2 * n - c} modulo {@code 3**log3}, which determines
+	 * the residue of {@code x} modulo {@code 3**(log3-exponent3)}
+	 * @param mayBeUndoubled true if {@code x} itself is even, so that it may be used without doubling
+	 */
+	private static boolean hasSmallerPredecessor(int numerator, int log3, int exponent2, int exponent3, boolean mayBeUndoubled) {
+		if (exponent3 >= log3) return false;
+		final int modulus = IntMath.pow(3, log3);
+		final int powerOfThree = IntMath.pow(3, exponent3);
+		// Using a predecessor with 2**exponent2 >= 3**log3 can't help.
+		for (int e = mayBeUndoubled ? 0 : 1; 1L << (exponent2 + e) < modulus; ++e) {
+			final int doubled = (int) (((long) numerator << e) % modulus);
+			// The predecessor (2**e * x - 1) / 3 exists and is odd iff 2**e * x is even and congruent to 1 modulo 3.
+			if (doubled % (3 * powerOfThree) != powerOfThree) continue;
+			final int newExponent2 = exponent2 + e;
+			final int newExponent3 = exponent3 + 1;
+			if (1L << newExponent2 < IntMath.pow(3, newExponent3)) return true;
+			final int newNumerator = (doubled - powerOfThree + modulus) % modulus;
+			if (hasSmallerPredecessor(newNumerator, log3, newExponent2, newExponent3, false)) return true;
+		}
+		return false;
+	}
+
+	/** Return the start of the first block of this sieve which can be used for a range starting at {@code min}. */
+	long sievedMin(long min) {
+		return sievedMin(min, modulus);
+	}
+
+	/** Return the end of the last block of this sieve which can be used for a range ending at {@code max}. */
+	long sievedMax(long max) {
+		return sievedMax(max, modulus);
+	}
+
+	/**
+	 * Return the start of the first complete block of {@code modulus} numbers starting at or above {@code min}.
+	 * A sieve can be used for complete blocks only, and never for the block starting at zero, where the residues don't tell enough.
+	 * If the result isn't below the {@link #sievedMax(long, long)} for the end of the range, there's no such block.
+	 */
+	static long sievedMin(long min, long modulus) {
+		return Math.max(modulus, (min + modulus - 1) / modulus * modulus);
+	}
+
+	/** Return the end of the last complete block of {@code modulus} numbers ending at or below {@code max}. */
+	static long sievedMax(long max, long modulus) {
+		return (max+1) / modulus * modulus - 1;
+	}
+
+	/** Return the fraction of starts which need to be evaluated. */
+	double survivingFraction() {
+		return (double) survivors.length / modulus;
+	}
+
+	@Override public String toString() {
+		return getClass().getSimpleName() + "-" + log2 + "-" + log3;
+	}
+
+	static final int MAX_LOG2 = 20;
+	static final int MAX_LOG3 = 4;
+
+	@Getter private final int log2;
+	@Getter private final int log3;
+	/** The period of the sieve, i.e., 2<sup>log2</sup> * 3<sup>log3</sup>. */
+	@Getter private final int modulus;
+	/** The residues modulo {@link #modulus} which can't be skipped, in increasing order. Must not be modified. */
+	@Getter private final int[] survivors;
+}
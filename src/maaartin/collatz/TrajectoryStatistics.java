@@ -0,0 +1,104 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.math.BigInteger;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The statistics of a single trajectory, i.e., its {@link Collatz#delay}, the number of its odd steps, and its peak,
+ * i.e., the biggest value reached, which needs more than 64 bits long before the start does.
+ *
+ * <p>All of them get computed in a single walk jumping by {@code evenSteps} steps just like {@link JumpingCollatz}.
+ * The peak of every jump gets computed or bounded using {@link JumpPeaks#peakMultiplier} and the addends
+ * and the jump gets retraced step by step only when the bound exceeds the peak found so far.
+ */
+@Getter @EqualsAndHashCode @RequiredArgsConstructor final class TrajectoryStatistics {
+	/** Return the statistics of the trajectory starting at {@code start}. */
+	static TrajectoryStatistics compute(JumpingTable jumpingTable, CollatzTable collatzTable, long start) {
+		checkArgument(start > 0);
+		final int mask = jumpingTable.mask();
+		final int evenSteps = jumpingTable.evenSteps();
+		checkArgument(collatzTable.readLimit() > mask);
+		final MutableLong128 x = new MutableLong128(start);
+		final MutableLong128 peak = new MutableLong128(start);
+		final MutableLong128 bound = new MutableLong128();
+		final JumpPeaks peaks = jumpingTable.peaks();
+		int delay = 0;
+		int oddSteps = 0;
+		while (x.high() != 0 || x.low() != 1) {
+			if (x.high() == 0 && x.low() >= 0 && x.low() <= mask) {
+				// The trajectory reaching 1 within the jump would continue cycling, so the remaining delay must be long enough.
+				final int ntz = Long.numberOfTrailingZeros(x.low());
+				if (ntz + collatzTable.get(x.low() >>> ntz) < evenSteps + jumpingTable.oddSteps((int) x.low())) break;
+			}
+			final int jumpOddSteps = jump(jumpingTable, peaks, x, peak, bound);
+			delay += evenSteps + jumpOddSteps;
+			oddSteps += jumpOddSteps;
+		}
+		while (x.low() != 1) {
+			if (step(x, peak)) {
+				delay += 2;
+				++oddSteps;
+			} else {
+				++delay;
+			}
+		}
+		return new TrajectoryStatistics(delay, oddSteps, peak.low(), peak.high());
+	}
+
+	/**
+	 * Jump from {@code x} by {@code evenSteps} steps, update the {@code peak}, and return the number of odd steps.
+	 * The {@code bound} gets used as a scratch variable.
+	 */
+	static int jump(JumpingTable jumpingTable, JumpPeaks peaks, MutableLong128 x, MutableLong128 peak, MutableLong128 bound) {
+		final int evenSteps = jumpingTable.evenSteps();
+		final int discriminant = (int) (x.low() & jumpingTable.mask());
+		final int oddSteps = jumpingTable.oddSteps(discriminant);
+		final long shifted = x.low() >>> evenSteps;
+		final boolean big = x.high() != 0 || shifted >= peaks.peakThreshold(discriminant);
+		// With nothing above the index, the values reached are the addends, so the maxAddend is exact, too.
+		final boolean exact = big || shifted == 0;
+		bound.setTo(x.low(), x.high());
+		final boolean fits = bound.tryJump(evenSteps, peaks.peakMultiplier(discriminant),
+				big ? peaks.peakAddend(discriminant) : peaks.maxAddend(discriminant));
+		if (fits && exact && bound.compareTo(peak) > 0) peak.setTo(bound.low(), bound.high());
+		if (fits && (exact || bound.compareTo(peak) <= 0)) {
+			x.jump(evenSteps, JumpingTable.oddStepsToMultiplier(oddSteps), jumpingTable.addend(discriminant));
+		} else {
+			for (int i=0; i<evenSteps; ++i) step(x, peak);
+		}
+		return oddSteps;
+	}
+
+	/** Replace {@code x} by {@code x/2} or {@code (3*x+1)/2}, update the {@code peak}, and return whether the step was odd. */
+	static boolean step(MutableLong128 x, MutableLong128 peak) {
+		if ((x.low() & 1) == 0) {
+			x.shiftRight(1);
+			return false;
+		}
+		x.jump(0, 3, 1);
+		if (x.compareTo(peak) > 0) peak.setTo(x.low(), x.high());
+		x.shiftRight(1);
+		return true;
+	}
+
+	BigInteger peak() {
+		return new MutableLong128(peakLow, peakHigh).toBigInteger();
+	}
+
+	@Override public String toString() {
+		return getClass().getSimpleName() + "-" + delay + "-" + oddSteps + "-" + peak();
+	}
+
+	private final int delay;
+	/** The number of steps of the form {@code 3*x+1}. */
+	private final int oddSteps;
+	/** The lower 64 bits of the peak treated as unsigned. */
+	private final long peakLow;
+	/** The upper 64 bits of the peak. */
+	private final long peakHigh;
+}
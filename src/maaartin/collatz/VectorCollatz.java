@@ -0,0 +1,163 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * An implementation following a whole vector of trajectories at once using the {@code jdk.incubator.vector} API,
+ * which must be enabled via {@code --add-modules jdk.incubator.vector}.
+ *
+ * <p>Every lane jumps by {@code evenSteps} steps like in {@link JumpingCollatz} until it lands in the {@link CollatzTable},
+ * with the parameters of the jump gathered from flattened copies of the {@link JumpingTable}.
+ * Only the final lookup in the {@link CollatzTable} works lane by lane.
+ * Lanes which would overflow 64 bits and everything but the sieved part of {@link #maximize} get handled by a {@link JumpingCollatz}.
+ *
+ * <p>On Java 17, it's still about three times slower than the {@link JumpingCollatz}, as measured by the {@link VectorCollatzBenchmark}.
+ */
+final class VectorCollatz extends Collatz {
+	VectorCollatz(JumpingTable jumpingTable, CollatzTable collatzTable) {
+		this(jumpingTable, collatzTable, JumpingCollatz.defaultSieve());
+	}
+
+	VectorCollatz(JumpingTable jumpingTable, CollatzTable collatzTable, ResidueSieve sieve) {
+		scalarCollatz = new JumpingCollatz(jumpingTable, collatzTable, sieve);
+		this.collatzTable = collatzTable;
+		this.sieve = sieve;
+		evenSteps = jumpingTable.evenSteps();
+		mask = jumpingTable.mask();
+		multipliers = new long[mask+1];
+		addends = new long[mask+1];
+		steps = new long[mask+1];
+		maxShifted = new long[mask+1];
+		for (int i=0; i<=mask; ++i) {
+			final int oddSteps = jumpingTable.oddSteps(i);
+			multipliers[i] = JumpingTable.oddStepsToMultiplier(oddSteps);
+			addends[i] = jumpingTable.addend(i);
+			steps[i] = oddSteps + evenSteps;
+			maxShifted[i] = (Long.MAX_VALUE - addends[i]) / multipliers[i];
+		}
+		survivors = new long[sieve.survivors().length];
+		for (int i=0; i<survivors.length; ++i) survivors[i] = sieve.survivors()[i];
+		final long[] records = Records.getDelayRecords();
+		lowerBounds = new long[(int) records[records.length-2] + 1];
+		for (int i=0; i<lowerBounds.length; ++i) lowerBounds[i] = Records.getLowerBoundForDelay(i);
+	}
+
+	@Override public long limit() {
+		return scalarCollatz.limit();
+	}
+
+	@Override public int delay(long start) {
+		return scalarCollatz.delay(start);
+	}
+
+	@Override public long maximize(long min, long max) {
+		checkArgument(0 < min && min <= max && max < limit());
+		if (min > max>>1) return scalarCollatz.maximize(min, max);
+		min = max >> 1;
+		final long sievedMin = sieve.sievedMin(min);
+		final long sievedMax = sieve.sievedMax(max);
+		if (sievedMin >= sievedMax) return scalarCollatz.maximize(min, max);
+		final JumpingCollatz.State best = new JumpingCollatz.State();
+		maximizeSieved(best, sievedMin, sievedMax);
+		// The edges are narrow ranges, for which JumpingCollatz works without sieving.
+		if (min < sievedMin) update(best, scalarCollatz.maximize(min, sievedMin-1));
+		if (sievedMax < max) update(best, scalarCollatz.maximize(sievedMax+1, max));
+		return best.result;
+	}
+
+	private void update(JumpingCollatz.State best, long n) {
+		best.update(n, scalarCollatz.delay(n));
+	}
+
+	/** Process all survivors of the {@link ResidueSieve} between {@code from} and {@code to}, a vector at a time. */
+	private void maximizeSieved(JumpingCollatz.State best, long from, long to) {
+		final int modulus = sieve.modulus();
+		assert from%modulus == 0 && (to+1)%modulus == 0 && from >= modulus;
+		final int length = SPECIES.length();
+		final int[] indexes = new int[length];
+		final long[] starts = new long[length];
+		final long[] values = new long[length];
+		final long[] delays = new long[length];
+		for (long base=to+1-modulus; base>=from; base-=modulus) {
+			for (int i=0; i<survivors.length; i+=length) {
+				final VectorMask<Long> valid = SPECIES.indexInRange(i, survivors.length);
+				final LongVector start = LongVector.fromArray(SPECIES, survivors, i, valid).add(base, valid);
+				LongVector x = start;
+				LongVector delay = LongVector.zero(SPECIES);
+				VectorMask<Long> active = valid.and(x.compare(VectorOperators.GE, collatzTable.readLimit()));
+				VectorMask<Long> overflown = SPECIES.maskAll(false);
+				VectorMask<Long> pruned = SPECIES.maskAll(false);
+				while (active.anyTrue()) {
+					// Like in JumpingCollatz, a lane gets pruned when it can't reach the longest delay anymore.
+					final LongVector needed = LongVector.broadcast(SPECIES, best.longest).sub(delay).max(0).min(lowerBounds.length-1);
+					toIndexes(needed, indexes);
+					final VectorMask<Long> hopeless = active.and(x.compare(VectorOperators.LT, LongVector.fromArray(SPECIES, lowerBounds, 0, indexes, 0)));
+					pruned = pruned.or(hopeless);
+					active = active.andNot(hopeless);
+					toIndexes(x.and(mask), indexes);
+					final LongVector shifted = x.lanewise(VectorOperators.LSHR, evenSteps);
+					final VectorMask<Long> fits = shifted.compare(VectorOperators.LE, LongVector.fromArray(SPECIES, maxShifted, 0, indexes, 0));
+					overflown = overflown.or(active.andNot(fits));
+					active = active.and(fits);
+					final LongVector multiplier = LongVector.fromArray(SPECIES, multipliers, 0, indexes, 0);
+					final LongVector addend = LongVector.fromArray(SPECIES, addends, 0, indexes, 0);
+					x = x.blend(shifted.mul(multiplier).add(addend), active);
+					delay = delay.add(LongVector.fromArray(SPECIES, steps, 0, indexes, 0), active);
+					active = active.and(x.compare(VectorOperators.GE, collatzTable.readLimit()));
+				}
+				// Stripping the trailing zeros by halving the shift distance, as there's no vector operation for counting them.
+				for (int shift=32; shift>0; shift>>=1) {
+					final VectorMask<Long> even = x.and((1L << shift) - 1).compare(VectorOperators.EQ, 0);
+					x = x.blend(x.lanewise(VectorOperators.LSHR, shift), even);
+					delay = delay.add(shift, even);
+				}
+				start.intoArray(starts, 0);
+				x.intoArray(values, 0);
+				delay.intoArray(delays, 0);
+				for (int lane=0; lane<length; ++lane) {
+					if (!valid.laneIsSet(lane) || pruned.laneIsSet(lane)) continue;
+					if (overflown.laneIsSet(lane)) {
+						best.update(starts[lane], scalarCollatz.delay(starts[lane]));
+						continue;
+					}
+					best.update(starts[lane], (int) delays[lane] + collatzTable.get(values[lane]));
+				}
+			}
+		}
+	}
+
+	/** Store the lanes of the argument, which must fit in an int, into the {@code indexes}, so that they can serve as an index map. */
+	private static void toIndexes(LongVector vector, int[] indexes) {
+		((IntVector) vector.convertShape(VectorOperators.L2I, INT_SPECIES, 0)).intoArray(indexes, 0);
+	}
+
+	/** At most 256 bits, as the gathering loads of 512 bits crash the JIT of Java 17. */
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED.vectorBitSize() > 256 ? LongVector.SPECIES_256 : LongVector.SPECIES_PREFERRED;
+	/** The species having as many lanes as {@link #SPECIES}, used for the index maps. */
+	private static final VectorSpecies<Integer> INT_SPECIES = VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+	private final JumpingCollatz scalarCollatz;
+	private final CollatzTable collatzTable;
+	private final ResidueSieve sieve;
+	private final int evenSteps;
+	private final int mask;
+
+	/** The flattened {@link JumpingTable}, allowing to gather into a {@link LongVector}. */
+	private final long[] multipliers;
+	private final long[] addends;
+	private final long[] steps;
+	/** The largest shifted value for which the jump can't overflow. */
+	private final long[] maxShifted;
+
+	/** The {@link ResidueSieve#survivors} as longs. */
+	private final long[] survivors;
+	/** The {@link Records#getLowerBoundForDelay} for all delays up to the one of the last known record, allowing to gather them. */
+	private final long[] lowerBounds;
+}
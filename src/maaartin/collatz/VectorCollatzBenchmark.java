@@ -0,0 +1,68 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Verify.verify;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link Collatz#maximize} throughput of the {@link VectorCollatz} against the {@link SimpleCollatz} and the {@link JumpingCollatz}.
+ *
+ * <p>Kept apart from the {@link CollatzBenchmark}, so that only these forks need the incubating vector module.
+ */
+@BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=1) @Measurement(iterations=3) @Fork(value=1, jvmArgsAppend={"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+@State(Scope.Benchmark) public class VectorCollatzBenchmark {
+	public static void main(String[] args) throws Exception {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		final OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLineOptions);
+		if (commandLineOptions.getIncludes().isEmpty()) options.include(VectorCollatzBenchmark.class.getSimpleName());
+		new Runner(options.build()).run();
+	}
+
+	@Setup(Level.Trial) public void setUp() {
+		final JumpingTable jumpingTable = JumpingTable.newTable(jumpingLogSize);
+		final CollatzTable collatzTable = CollatzTable.newTable(jumpingTable, collatzLogSize);
+		switch (engine) {
+			case "SIMPLE": collatz = new SimpleCollatz(); break;
+			case "JUMPING": collatz = new JumpingCollatz(jumpingTable, collatzTable); break;
+			case "VECTOR": collatz = new VectorCollatz(jumpingTable, collatzTable); break;
+			default: throw new IllegalArgumentException(engine);
+		}
+	}
+
+	@TearDown(Level.Trial) public void tearDown() {
+		if (max == (long) 1e8) verify(result == 63728127);
+		if (max == (long) 1e9) verify(result == 670617279);
+	}
+
+	@Benchmark public long maximize() {
+		return result = collatz.maximize(1, max);
+	}
+
+	@Param({"SIMPLE", "JUMPING", "VECTOR"}) public String engine;
+	/** The {@link SimpleCollatz} is too slow for much bigger ranges. */
+	@Param({"100000000"}) public long max;
+	@Param({"17"}) public int jumpingLogSize;
+	@Param({"24"}) public int collatzLogSize;
+
+	private Collatz collatz;
+	private long result;
+}
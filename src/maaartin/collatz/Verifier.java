@@ -0,0 +1,136 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Verifies that all starts in a range reach 1, assuming that all smaller starts do.
+ *
+ * <p>By induction, it suffices to check that every start drops below itself, which is what the {@link GlideSieve#glide} tells.
+ * Working modulo {@code 3 * 2**log2}, the following starts can be skipped:
+ * <ul>
+ * <li>Those not being {@link GlideSieve#survivors}, as they provably drop below themselves.
+ * <li>Those of the form 3*z + 2, as they get reached from the smaller start 2*z + 1 via 6*z + 4.
+ * </ul>
+ *
+ * <p>A start whose trajectory exceeds 127 bits or doesn't drop below itself within the budget gets reported as an {@link Anomaly}.
+ * The range is verified completely only if there's none.
+ */
+final class Verifier {
+	enum Reason {
+		OVERFLOW,
+		BUDGET_EXCEEDED,
+	}
+
+	@Getter @EqualsAndHashCode @ToString @RequiredArgsConstructor static final class Anomaly {
+		private final long n;
+		private final Reason reason;
+	}
+
+	/** The outcome of a {@link Verifier#verify}. */
+	@Getter @ToString @RequiredArgsConstructor static final class Report {
+		/** Return how many starts per second got verified, including the skipped ones. */
+		double numbersPerSecond() {
+			return (to - from + 1) * 1e9 / Math.max(1, nanos);
+		}
+
+		private final long from;
+		private final long to;
+		/** The number of starts whose glide got computed. */
+		private final long checked;
+		private final long nanos;
+		/** The anomalies found in increasing order. */
+		private final ImmutableList<Anomaly> anomalies;
+	}
+
+	/** The result of verifying some chunks, which can't be shared by threads. */
+	private static final class Part {
+		private void merge(Part other) {
+			checked += other.checked;
+			anomalies.addAll(other.anomalies);
+		}
+
+		private long checked;
+		private final List<Anomaly> anomalies = new ArrayList<>();
+	}
+
+	/**
+	 * @param budget the number of steps after which a start not dropping below itself gets reported
+	 */
+	Verifier(GlideSieve sieve, int budget) {
+		checkArgument(budget > 0);
+		this.sieve = checkNotNull(sieve);
+		this.budget = budget;
+		final int[] glideSurvivors = sieve.survivors();
+		modulus = 3 * sieve.modulus();
+		final List<Integer> list = new ArrayList<>();
+		for (int i=0; i<3; ++i) {
+			for (final int r : glideSurvivors) {
+				final int s = i * sieve.modulus() + r;
+				if (s % 3 != 2) list.add(s);
+			}
+		}
+		survivors = list.stream().mapToInt(Integer::intValue).sorted().toArray();
+	}
+
+	/** Verify all starts between {@code from} and {@code to}, assuming that all starts below {@code from} reach 1, using all available cores. */
+	Report verify(long from, long to) {
+		checkArgument(0 < from && from <= to && to <= MAX_START);
+		final long chunkLength = (long) modulus << LOG_BLOCKS_PER_CHUNK;
+		final long start = System.nanoTime();
+		// The chunks are aligned, so that only the first and the last one may contain incomplete blocks.
+		final Part part = LongStream.rangeClosed(from / chunkLength, to / chunkLength).parallel()
+				.collect(Part::new, (p, chunk) -> verifyPart(p, Math.max(from, chunk * chunkLength), Math.min(to, (chunk+1) * chunkLength - 1)), Part::merge);
+		return new Report(from, to, part.checked, System.nanoTime() - start, ImmutableList.copyOf(part.anomalies));
+	}
+
+	private void verifyPart(Part part, long from, long to) {
+		final long sievedFrom = ResidueSieve.sievedMin(from, modulus);
+		final long sievedTo = ResidueSieve.sievedMax(to, modulus);
+		if (sievedFrom >= sievedTo) {
+			verifySimply(part, from, to);
+			return;
+		}
+		verifySimply(part, from, sievedFrom-1);
+		for (long base=sievedFrom; base<sievedTo; base+=modulus) {
+			for (final int r : survivors) verify(part, base + r);
+		}
+		verifySimply(part, sievedTo+1, to);
+	}
+
+	private void verifySimply(Part part, long from, long to) {
+		for (long n=from; n<=to; ++n) verify(part, n);
+	}
+
+	private void verify(Part part, long n) {
+		++part.checked;
+		try {
+			if (sieve.glide(n, budget) > budget) part.anomalies.add(new Anomaly(n, Reason.BUDGET_EXCEEDED));
+		} catch (final ArithmeticException e) {
+			part.anomalies.add(new Anomaly(n, Reason.OVERFLOW));
+		}
+	}
+
+	/** The biggest start allowed, which is far beyond anything verifiable and avoids any overflow when computing the chunks. */
+	static final long MAX_START = 1L << 62;
+	/** Every chunk processed by a single task consists of this many blocks. */
+	private static final int LOG_BLOCKS_PER_CHUNK = 6;
+
+	private final GlideSieve sieve;
+	private final int budget;
+	/** The period of the sieve, i.e., 3 * 2<sup>log2</sup>. */
+	private final int modulus;
+	/** The residues modulo {@link #modulus} which need to be checked, in increasing order. */
+	private final int[] survivors;
+}
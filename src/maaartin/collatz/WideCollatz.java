@@ -0,0 +1,185 @@
+package maaartin.collatz;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+/**
+ * An implementation working for starts up to 2<sup>127</sup> and beyond.
+ *
+ * <p>Just like {@link JumpingCollatz}, it jumps by {@code evenSteps} steps using the {@link JumpingTable},
+ * with the value kept in a {@link MutableLong128}.
+ * Trajectories exceeding 127 bits continue as a {@link BigInteger}, until they fit again.
+ * As soon as the value gets below the {@link JumpingCollatz#limit}, the {@link JumpingCollatz} and its {@link CollatzTable} take over.
+ *
+ * <p>When maximizing, the numbers get represented by their offsets from the start of the range,
+ * so that the {@link JumpingCollatz.State} and its threshold can be reused.
+ */
+final class WideCollatz extends Collatz {
+	WideCollatz(JumpingTable jumpingTable, CollatzTable collatzTable) {
+		this.jumpingTable = jumpingTable;
+		jumpingCollatz = new JumpingCollatz(jumpingTable, collatzTable);
+	}
+
+	/** Return {@link Long#MAX_VALUE}, as all longs are supported. For bigger arguments, use {@link #delay(long, long)}. */
+	@Override public long limit() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override public int delay(long start) {
+		checkArgument(start > 0);
+		return start < jumpingCollatz.limit() ? jumpingCollatz.delay(start) : delayInternal(new MutableLong128(start), -1);
+	}
+
+	/**
+	 * Return the delay of {@code low + 2**64 * high}, where the lower part is treated as unsigned.
+	 *
+	 * @param high a non-negative number
+	 */
+	int delay(long low, long high) {
+		checkArgument(high > 0 || high == 0 && low != 0);
+		return high == 0 && low > 0 && low < jumpingCollatz.limit() ? jumpingCollatz.delay(low) : delayInternal(new MutableLong128(low, high), -1);
+	}
+
+	/** Return the delay of an arbitrary positive number. */
+	int delay(BigInteger start) {
+		checkArgument(start.signum() > 0);
+		return start.bitLength() < 128 ? delay(start.longValue(), start.shiftRight(64).longValue()) : delayBig(start);
+	}
+
+	@Override public long maximize(long min, long max) {
+		checkArgument(0 < min && min <= max);
+		return maximize(BigInteger.valueOf(min), BigInteger.valueOf(max)).longValueExact();
+	}
+
+	/**
+	 * Return the number between {@code min} and {@code max} maximizing the {@link #delay}, with ties resolved in favor of the smaller one.
+	 * The range must be shorter than 2<sup>63</sup> and {@code max} must be below 2<sup>127</sup>.
+	 *
+	 * <p>Just like {@link JumpingCollatz#maximize(long, long)}, it skips the numbers below {@code max/2} and those excluded by the {@link ResidueSieve}
+	 * and abandons every trajectory as soon as it can't reach the longest delay found so far.
+	 */
+	BigInteger maximize(BigInteger min, BigInteger max) {
+		return maximize(min, max, false);
+	}
+
+	/**
+	 * Return the same result as {@link #maximize(BigInteger, BigInteger)}, but use all threads of the {@link ForkJoinPool#commonPool}.
+	 * Every chunk of {@link ResidueSieve#modulus} numbers gets its own {@link JumpingCollatz.State}, only the longest delay gets shared for pruning.
+	 */
+	BigInteger maximizeInParallel(BigInteger min, BigInteger max) {
+		return maximize(min, max, true);
+	}
+
+	private BigInteger maximize(BigInteger min, BigInteger max, boolean parallel) {
+		checkNotNull(min);
+		checkArgument(min.signum() > 0 && min.compareTo(max) <= 0 && max.bitLength() < 128);
+		final boolean smart = min.compareTo(max.shiftRight(1)) <= 0;
+		// For every number x below max/2, delay(2*x) will dominate delay(x).
+		min = min.max(max.shiftRight(1));
+		final long count = max.subtract(min).longValueExact();
+		final MutableLong128 origin = new MutableLong128(min);
+		final AtomicInteger shared = parallel ? new AtomicInteger(-1) : null;
+		final JumpingCollatz.State state = new JumpingCollatz.State(shared);
+		// The offsets of the complete blocks of the sieve, if it's usable, otherwise of the whole range.
+		long from = 0;
+		long to = count;
+		boolean sieved = false;
+		if (smart) {
+			// Like ResidueSieve#sievedMin and sievedMax, but as offsets. The first block never starts at zero, as min is positive.
+			final int modulus = jumpingCollatz.sieve().modulus();
+			final long sievedFrom = Math.floorMod(-min.mod(BigInteger.valueOf(modulus)).longValue(), modulus);
+			final long sievedTo = count - max.add(BigInteger.ONE).mod(BigInteger.valueOf(modulus)).longValue();
+			if (sievedFrom < sievedTo) {
+				from = sievedFrom;
+				to = sievedTo;
+				sieved = true;
+			}
+		}
+		state.merge(maximizeChunks(shared, origin, parallel, sieved, from, to));
+		maximizeSimply(state, origin, 0, from-1);
+		maximizeSimply(state, origin, to+1, count);
+		return origin.toBigInteger().add(BigInteger.valueOf(state.result));
+	}
+
+	/** Process the offsets between {@code from} and {@code to} split in chunks of {@link ResidueSieve#modulus} numbers, each into a new state. */
+	private JumpingCollatz.State maximizeChunks(AtomicInteger shared, MutableLong128 origin, boolean parallel, boolean sieved, long from, long to) {
+		final int modulus = jumpingCollatz.sieve().modulus();
+		final long last = (to-from) / modulus;
+		// Doing the upper chunks first just like JumpingCollatz#maximizeSieved, so that the threshold grows fast.
+		final LongStream chunks = LongStream.rangeClosed(0, last).map(i -> from + (last-i) * modulus);
+		return (parallel ? chunks.parallel() : chunks).collect(() -> new JumpingCollatz.State(shared),
+				(state, offset) -> maximizeChunk(state, origin, sieved, offset, offset + Math.min(to-offset, modulus-1)),
+				JumpingCollatz.State::merge);
+	}
+
+	/**
+	 * Process the offsets between {@code from} and {@code to}, which form a complete block of the {@link JumpingCollatz#sieve},
+	 * whose survivors are the only ones needing to be processed, if {@code sieved} is set.
+	 */
+	private void maximizeChunk(JumpingCollatz.State state, MutableLong128 origin, boolean sieved, long from, long to) {
+		if (!sieved) {
+			maximizeSimply(state, origin, from, to);
+			return;
+		}
+		assert to - from + 1 == jumpingCollatz.sieve().modulus();
+		final MutableLong128 x = new MutableLong128();
+		for (final int r : jumpingCollatz.sieve().survivors()) evaluate(state, origin, x, from + r);
+	}
+
+	private void maximizeSimply(JumpingCollatz.State state, MutableLong128 origin, long from, long to) {
+		final MutableLong128 x = new MutableLong128();
+		for (long offset=from; offset<=to; ++offset) evaluate(state, origin, x, offset);
+	}
+
+	/** Evaluate the number {@code origin + offset} using {@code x} as the scratch space. */
+	private void evaluate(JumpingCollatz.State state, MutableLong128 origin, MutableLong128 x, long offset) {
+		final long low = origin.low() + offset;
+		// The offset is non-negative, so there's a carry if and only if the sum is smaller.
+		x.setTo(low, Long.compareUnsigned(low, origin.low()) < 0 ? origin.high() + 1 : origin.high());
+		final int threshold = state.threshold();
+		state.evaluated(offset, delayInternal(x, threshold), threshold);
+	}
+
+	/**
+	 * Return the delay of {@code x}, if it's at least {@code threshold}. Otherwise, a smaller number may be returned.
+	 * The argument gets overwritten, so that a single instance can be reused for a whole scan.
+	 */
+	private int delayInternal(MutableLong128 x, int threshold) {
+		final int mask = jumpingTable.mask();
+		final int evenSteps = jumpingTable.evenSteps();
+		final long limit = jumpingCollatz.limit();
+		int result = 0;
+		while (!x.fitsInLong() || x.low() >= limit) {
+			final int discriminant = (int) (x.low() & mask);
+			final int oddSteps = jumpingTable.oddSteps(discriminant);
+			final long multiplier = JumpingTable.oddStepsToMultiplier(oddSteps);
+			if (!x.tryJump(evenSteps, multiplier, jumpingTable.addend(discriminant))) return result + delayBig(x.toBigInteger());
+			result += oddSteps + evenSteps;
+		}
+		return result + jumpingCollatz.delay(x.low(), threshold - result);
+	}
+
+	/** Process the part of the trajectory exceeding 127 bits. */
+	private int delayBig(BigInteger x) {
+		final int mask = jumpingTable.mask();
+		final int evenSteps = jumpingTable.evenSteps();
+		int result = 0;
+		// Jumping at least once, as the argument may fit in 127 bits but its successor doesn't.
+		do {
+			final int discriminant = x.intValue() & mask;
+			final int oddSteps = jumpingTable.oddSteps(discriminant);
+			final BigInteger multiplier = BigInteger.valueOf(JumpingTable.oddStepsToMultiplier(oddSteps));
+			x = x.shiftRight(evenSteps).multiply(multiplier).add(BigInteger.valueOf(jumpingTable.addend(discriminant)));
+			result += oddSteps + evenSteps;
+		} while (x.bitLength() >= 128);
+		return result + delay(x);
+	}
+
+	private final JumpingTable jumpingTable;
+	private final JumpingCollatz jumpingCollatz;
+}